@@ -0,0 +1,116 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The canvas that counts the draw calls made on it, so that benchmarks may show how many calls an object, or a frame, takes.
+ * Only the draw calls used by the game are counted.
+ */
+public class CountingCanvas extends Canvas {
+	private int mDrawCallCount;
+
+	public CountingCanvas(final Bitmap bitmap) {
+		super(bitmap);
+	}
+
+	/**
+	 * Returns the number of draw calls made since the canvas was created or the counter was reset.
+	 */
+	public int getDrawCallCount() {
+		return mDrawCallCount;
+	}
+
+	public void resetDrawCallCount() {
+		mDrawCallCount = 0;
+	}
+
+	@Override
+	public void drawPaint(final Paint paint) {
+		mDrawCallCount++;
+		super.drawPaint(paint);
+	}
+
+	@Override
+	public void drawColor(final int color) {
+		mDrawCallCount++;
+		super.drawColor(color);
+	}
+
+	@Override
+	public void drawRect(final float left, final float top, final float right, final float bottom, final Paint paint) {
+		mDrawCallCount++;
+		super.drawRect(left, top, right, bottom, paint);
+	}
+
+	@Override
+	public void drawRect(final Rect rect, final Paint paint) {
+		mDrawCallCount++;
+		super.drawRect(rect, paint);
+	}
+
+	@Override
+	public void drawRect(final RectF rect, final Paint paint) {
+		mDrawCallCount++;
+		super.drawRect(rect, paint);
+	}
+
+	@Override
+	public void drawBitmap(final Bitmap bitmap, final float left, final float top, final Paint paint) {
+		mDrawCallCount++;
+		super.drawBitmap(bitmap, left, top, paint);
+	}
+
+	@Override
+	public void drawBitmap(final Bitmap bitmap, final Rect src, final Rect dst, final Paint paint) {
+		mDrawCallCount++;
+		super.drawBitmap(bitmap, src, dst, paint);
+	}
+
+	@Override
+	public void drawBitmap(final Bitmap bitmap, final Rect src, final RectF dst, final Paint paint) {
+		mDrawCallCount++;
+		super.drawBitmap(bitmap, src, dst, paint);
+	}
+
+	@Override
+	public void drawBitmap(final Bitmap bitmap, final Matrix matrix, final Paint paint) {
+		mDrawCallCount++;
+		super.drawBitmap(bitmap, matrix, paint);
+	}
+
+	@Override
+	public void drawVertices(final VertexMode mode, final int vertexCount, final float[] vertices, final int vertexOffset, final float[] texs,
+							 final int texOffset, final int[] colors, final int colorOffset, final short[] indices, final int indexOffset,
+							 final int indexCount, final Paint paint) {
+		mDrawCallCount++;
+		super.drawVertices(mode, vertexCount, vertices, vertexOffset, texs, texOffset, colors, colorOffset, indices, indexOffset, indexCount, paint);
+	}
+}
@@ -0,0 +1,282 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import no.nordicsemi.android.digitalbird.game.entity.EntitySnapshot;
+import no.nordicsemi.android.digitalbird.game.entity.EntityStore;
+import no.nordicsemi.android.digitalbird.game.entity.MovementSystem;
+import no.nordicsemi.android.digitalbird.game.graphics.DigitalBird;
+import no.nordicsemi.android.digitalbird.game.graphics.Pipe;
+import no.nordicsemi.android.digitalbird.game.graphics.SpriteRegistry;
+import no.nordicsemi.android.digitalbird.game.stats.FrameStats;
+import no.nordicsemi.android.digitalbird.game.target.BandedRenderTarget;
+import no.nordicsemi.android.digitalbird.game.target.BitmapRenderTarget;
+import no.nordicsemi.android.digitalbird.game.target.RecordingRenderTarget;
+import no.nordicsemi.android.digitalbird.game.target.RenderTarget;
+
+/**
+ * Runs the whole game loop headless, with the renderer thread drawing frames as fast as possible, and logs the frame statistics.
+ * <p>
+ * The game is played by the benchmark: the bird flies up in regular intervals and the game is restarted when over. With frames discarded
+ * by the {@link RecordingRenderTarget} the statistics show the cost of the game logic alone, with the {@link BitmapRenderTarget} they also
+ * include rasterization. Pipelined runs calculate the next frame on a separate thread, the latency statistics show the price.
+ * Banded runs rasterize frames on up to {@link #MAX_BAND_COUNT} threads with the {@link BandedRenderTarget}.
+ * The {@link CountingCanvas} shows the number of draw calls per frame.</p>
+ * <p>
+ * Other benchmarks compare different ways of drawing a single object, both the time and the number of draw calls.</p>
+ */
+public class GameBenchmark extends InstrumentationTestCase {
+	private static final String TAG = "GameBenchmark";
+	private static final int SCREEN_WIDTH = 1080;
+	private static final int SCREEN_HEIGHT = 1920;
+	/** The time each benchmark is run. */
+	private static final long RUN_TIME = 5000; // [ms]
+	/** The interval in which the bird flies up, or the game is restarted. */
+	private static final long PLAY_INTERVAL = 300; // [ms]
+	/** The maximum time to wait for game objects to be loaded. */
+	private static final long LOADING_TIMEOUT = 5000; // [ms]
+	/** The maximum number of bands, and threads, frames are rasterized with. */
+	private static final int MAX_BAND_COUNT = 8;
+	/** The number of times an object is drawn in object benchmarks. */
+	private static final int DRAW_COUNT = 2000;
+
+	public void testHeadlessGameLoop() throws Exception {
+		final RecordingRenderTarget target = new RecordingRenderTarget(SCREEN_WIDTH, SCREEN_HEIGHT);
+		final FrameStats stats = run("headless", target, false);
+		assertEquals(target.getFrameCount(), stats.frameCount);
+	}
+
+	public void testOffscreenRasterization() throws Exception {
+		final BitmapRenderTarget target = new BitmapRenderTarget(SCREEN_WIDTH, SCREEN_HEIGHT);
+		final FrameStats stats = run("offscreen", target, false);
+		assertEquals(target.getFrameCount(), stats.frameCount);
+	}
+
+	public void testPipelinedOffscreenRasterization() throws Exception {
+		final BitmapRenderTarget target = new BitmapRenderTarget(SCREEN_WIDTH, SCREEN_HEIGHT);
+		final FrameStats stats = run("offscreen pipelined", target, true);
+		assertEquals(target.getFrameCount(), stats.frameCount);
+	}
+
+	public void testBandedRasterization() throws Exception {
+		// Older versions of Android can't play the recorded frames back on multiple threads
+		if (!BandedRenderTarget.isSupported())
+			return;
+		final StringBuilder builder = new StringBuilder("banded rasterization, frames per run:");
+		for (int bandCount = 1; bandCount <= MAX_BAND_COUNT; bandCount *= 2) {
+			final BitmapRenderTarget bitmapTarget = new BitmapRenderTarget(SCREEN_WIDTH, SCREEN_HEIGHT);
+			final BandedRenderTarget target = new BandedRenderTarget(bitmapTarget, bandCount);
+			target.setSize(SCREEN_WIDTH, SCREEN_HEIGHT);
+			try {
+				final FrameStats stats = run("offscreen " + bandCount + " bands", target, false);
+				assertEquals(bitmapTarget.getFrameCount(), stats.frameCount);
+				builder.append(' ').append(bandCount).append(" bands ").append(stats.frameCount).append(',');
+			} finally {
+				target.release();
+				bitmapTarget.getBitmap().recycle();
+			}
+		}
+		Log.i(TAG, builder.toString());
+	}
+
+	public void testOffscreenDrawCalls() throws Exception {
+		final int unbatched = countDrawCalls("offscreen counting", false);
+		final int batched = countDrawCalls("offscreen counting batched", true);
+		Log.i(TAG, "offscreen counting: " + unbatched + " draw calls per frame, " + batched + " with sprite batching");
+	}
+
+	/**
+	 * Plays the game drawing frames on a {@link CountingCanvas}.
+	 * @return the average number of draw calls per frame
+	 */
+	private int countDrawCalls(final String name, final boolean spriteBatching) throws InterruptedException {
+		final Bitmap bitmap = Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888);
+		final CountingCanvas canvas = new CountingCanvas(bitmap);
+		final RenderTarget target = new RenderTarget() {
+			@Override
+			public Canvas lockCanvas(final Rect dirty) {
+				canvas.save();
+				if (dirty != null)
+					canvas.clipRect(dirty);
+				return canvas;
+			}
+
+			@Override
+			public void unlockCanvasAndPost(final Canvas canvas) {
+				canvas.restore();
+			}
+		};
+		final FrameStats stats = run(name, target, false, spriteBatching);
+		bitmap.recycle();
+		return canvas.getDrawCallCount() / stats.frameCount;
+	}
+
+	public void testPipeColumns() throws Exception {
+		final Resources resources = getInstrumentation().getTargetContext().getResources();
+		final Pipe pipe = new Pipe(new SpriteRegistry(resources));
+		pipe.setScreenDimensions(SCREEN_WIDTH, SCREEN_HEIGHT);
+		final Bitmap bitmap = Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888);
+		final CountingCanvas canvas = new CountingCanvas(bitmap);
+
+		// Spread pipes with random spans evenly over the screen
+		final int pipeCount = 4;
+		final EntityStore store = new EntityStore(pipeCount);
+		final MovementSystem movement = new MovementSystem();
+		movement.setWorldSize(SCREEN_WIDTH, SCREEN_HEIGHT);
+		for (int i = 0; i < pipeCount; ++i) {
+			pipe.spawn(store, 0);
+			movement.saveState(store);
+			movement.move(store, SCREEN_WIDTH / pipeCount);
+		}
+		final EntitySnapshot snapshot = new EntitySnapshot();
+		store.writeSnapshot(snapshot);
+
+		pipe.setColumnCacheEnabled(false);
+		final long composed = drawPipes(pipe, snapshot, canvas);
+		final int composedCalls = canvas.getDrawCallCount() / (DRAW_COUNT * snapshot.size());
+		pipe.setColumnCacheEnabled(true);
+		final long cached = drawPipes(pipe, snapshot, canvas);
+		final int cachedCalls = canvas.getDrawCallCount() / (DRAW_COUNT * snapshot.size());
+		Log.i(TAG, "pipe columns: part by part " + composed / 1000 + " us and " + composedCalls + " draw calls, column cache "
+				+ cached / 1000 + " us and " + cachedCalls + " draw calls per pipe");
+		assertTrue(cachedCalls < composedCalls);
+		bitmap.recycle();
+	}
+
+	/**
+	 * Draws all pipes from the snapshot and measures the drawing time. The draw call counter is reset before.
+	 * @return the average time of drawing a pipe in nanoseconds
+	 */
+	private long drawPipes(final Pipe pipe, final EntitySnapshot snapshot, final CountingCanvas canvas) {
+		canvas.resetDrawCallCount();
+		final long start = System.nanoTime();
+		for (int i = 0; i < DRAW_COUNT; ++i) {
+			for (int index = 0; index < snapshot.size(); ++index)
+				pipe.draw(canvas, snapshot, index, 1.0f);
+		}
+		return (System.nanoTime() - start) / (DRAW_COUNT * snapshot.size());
+	}
+
+	public void testBirdRotation() throws Exception {
+		final Resources resources = getInstrumentation().getTargetContext().getResources();
+		final DigitalBird bird = new DigitalBird(new SpriteRegistry(resources));
+		bird.setScreenDimensions(SCREEN_WIDTH, SCREEN_HEIGHT);
+		final Bitmap bitmap = Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		final float scaledDeltaTime = Simulation.SIMULATION_STEP * resources.getDisplayMetrics().density * GameEngine.SPEED_MODIFIER;
+
+		bird.setRotationCacheEnabled(false);
+		final long rotated = drawBird(bird, canvas, scaledDeltaTime);
+		bird.setRotationCacheEnabled(true);
+		final long cached = drawBird(bird, canvas, scaledDeltaTime);
+		Log.i(TAG, "bird rotation: rotated canvas " + rotated / 1000 + " us, rotation cache " + cached / 1000 + " us per frame");
+		bitmap.recycle();
+	}
+
+	/**
+	 * Flies the bird up and down, so that it is drawn at all angles, and measures the drawing time.
+	 * @param scaledDeltaTime the scaled time of a simulation step
+	 * @return the average time of drawing the bird in nanoseconds
+	 */
+	private long drawBird(final DigitalBird bird, final Canvas canvas, final float scaledDeltaTime) {
+		final DigitalBird.Snapshot snapshot = new DigitalBird.Snapshot();
+		bird.reset();
+		long total = 0;
+		for (int i = 0; i < DRAW_COUNT; ++i) {
+			if (i % 40 == 0)
+				bird.fly();
+			bird.saveState();
+			bird.move(scaledDeltaTime);
+			bird.writeSnapshot(snapshot);
+
+			final long start = System.nanoTime();
+			bird.draw(canvas, snapshot, 1.0f);
+			total += System.nanoTime() - start;
+		}
+		return total / DRAW_COUNT;
+	}
+
+	/**
+	 * Plays the game for {@link #RUN_TIME} drawing frames into the given target.
+	 * @param name the benchmark name to be logged
+	 * @param target the render target
+	 * @param pipelined true to calculate frames on a separate thread
+	 * @return the frame statistics
+	 */
+	private FrameStats run(final String name, final RenderTarget target, final boolean pipelined) throws InterruptedException {
+		return run(name, target, pipelined, true);
+	}
+
+	/**
+	 * Plays the game for {@link #RUN_TIME} drawing frames into the given target.
+	 * @param name the benchmark name to be logged
+	 * @param target the render target
+	 * @param pipelined true to calculate frames on a separate thread
+	 * @param spriteBatching true to draw sprites in batches
+	 * @return the frame statistics
+	 */
+	private FrameStats run(final String name, final RenderTarget target, final boolean pipelined, final boolean spriteBatching)
+			throws InterruptedException {
+		final Resources resources = getInstrumentation().getTargetContext().getResources();
+		final DigitalBirdGameLogic logic = new DigitalBirdGameLogic(resources);
+		assertTrue("Game objects not loaded", logic.awaitObjectsLoaded(LOADING_TIMEOUT));
+		logic.setGameSpeed(resources.getDisplayMetrics().density * GameEngine.SPEED_MODIFIER);
+		logic.setPipesInterval(2400);
+		logic.setPipeliningEnabled(pipelined);
+		logic.setSpriteBatchingEnabled(spriteBatching);
+
+		logic.startRendering(target, SCREEN_WIDTH, SCREEN_HEIGHT);
+		try {
+			logic.ready();
+			final long end = System.currentTimeMillis() + RUN_TIME;
+			while (System.currentTimeMillis() < end) {
+				switch (logic.getGameState()) {
+					case READY:
+						logic.start();
+						break;
+					case STARTED:
+						logic.fly();
+						break;
+					case OVER:
+						logic.ready();
+						break;
+				}
+				Thread.sleep(PLAY_INTERVAL);
+			}
+		} finally {
+			logic.stopRendering();
+		}
+
+		final FrameStats stats = logic.getFrameStats();
+		Log.i(TAG, name + ": " + stats);
+		assertTrue("No frames drawn", stats.frameCount > 0);
+		return stats;
+	}
+}
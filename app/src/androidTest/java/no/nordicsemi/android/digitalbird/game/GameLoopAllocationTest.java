@@ -0,0 +1,113 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.os.Debug;
+import android.content.res.Resources;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Verifies that the game loop does not allocate any objects in the steady state. Every garbage collection on the renderer thread
+ * is a visible stutter on older devices.
+ * <p>
+ * The test drives {@link DigitalBirdGameLogic#calculateFrame(long, GameState)} directly, without a surface, going through the READY,
+ * STARTED, FINISHING and OVER states in a loop. Each frame is also published and acquired, as it would be by the renderer.</p>
+ */
+public class GameLoopAllocationTest extends InstrumentationTestCase {
+	private static final int SCREEN_WIDTH = 1080;
+	private static final int SCREEN_HEIGHT = 1920;
+	private static final int WARM_UP_FRAMES = 5000;
+	private static final int FRAMES = 100000;
+	/** Number of frames spent in READY and OVER states before the game is started again. */
+	private static final int IDLE_STATE_FRAMES = 100;
+	/** The bird flies up every this number of frames. */
+	private static final int FLY_INTERVAL = 20;
+	/**
+	 * The maximum number of allocations allowed while running {@link #FRAMES} frames. A few objects may be allocated by the runtime itself,
+	 * but a single allocation per frame, or even per game, would exceed this budget.
+	 */
+	private static final int ALLOCATION_BUDGET = 10;
+	/** The maximum time to wait for game objects to be loaded. */
+	private static final long LOADING_TIMEOUT = 5000; // [ms]
+
+	private DigitalBirdGameLogic mGameLogic;
+	private GameState mLastState;
+	private int mStateFrames;
+	private int mGamesOver;
+
+	public void testSteadyStateDoesNotAllocate() throws Exception {
+		final Resources resources = getInstrumentation().getTargetContext().getResources();
+		mGameLogic = new DigitalBirdGameLogic(resources);
+		assertTrue("Game objects not loaded", mGameLogic.awaitObjectsLoaded(LOADING_TIMEOUT));
+		mGameLogic.setGameSpeed(resources.getDisplayMetrics().density * GameEngine.SPEED_MODIFIER);
+		mGameLogic.setPipesInterval(2400);
+		mGameLogic.onSurfaceChanged(0, SCREEN_WIDTH, SCREEN_HEIGHT);
+		mGameLogic.ready();
+
+		// Let all lazy initialization happen before counting
+		runFrames(WARM_UP_FRAMES);
+		mGamesOver = 0;
+
+		Debug.resetThreadAllocCount();
+		Debug.startAllocCounting();
+		runFrames(FRAMES);
+		Debug.stopAllocCounting();
+		final int allocations = Debug.getThreadAllocCount();
+
+		assertTrue("The game has never been finished, not all states were tested", mGamesOver > 0);
+		assertTrue(allocations + " objects allocated in " + FRAMES + " frames", allocations <= ALLOCATION_BUDGET);
+	}
+
+	private void runFrames(final int count) {
+		final DigitalBirdGameLogic logic = mGameLogic;
+
+		for (int i = 0; i < count; ++i) {
+			final GameState state = logic.getGameState();
+			if (state != mLastState) {
+				mLastState = state;
+				mStateFrames = 0;
+				if (state == GameState.OVER)
+					mGamesOver++;
+			}
+
+			switch (state) {
+				case READY:
+					if (++mStateFrames > IDLE_STATE_FRAMES)
+						logic.start();
+					break;
+				case STARTED:
+					if (++mStateFrames % FLY_INTERVAL == 0)
+						logic.fly();
+					break;
+				case OVER:
+					if (++mStateFrames > IDLE_STATE_FRAMES)
+						logic.ready();
+					break;
+			}
+
+			logic.calculateFrame(Simulation.SIMULATION_STEP, logic.getGameState());
+			logic.publishFrame(System.nanoTime(), 0.0f);
+			logic.acquireFrame();
+		}
+	}
+}
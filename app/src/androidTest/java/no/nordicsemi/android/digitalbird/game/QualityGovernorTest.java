@@ -0,0 +1,60 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.content.res.Resources;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Verifies that the {@link QualityGovernor} settles on a tier instead of switching tiers back and forth. The frame times are simulated:
+ * the cost of a frame falls with the square of the render scale of the current tier.
+ */
+public class QualityGovernorTest extends InstrumentationTestCase {
+	private static final long VSYNC_PERIOD = 16666667L; // [ns]
+	/** The number of windows simulated, a few minutes of play. */
+	private static final int WINDOW_COUNT = 100;
+
+	public void testSettlesJustOverThreshold() throws Exception {
+		final Resources resources = getInstrumentation().getTargetContext().getResources();
+		final QualityGovernor governor = new QualityGovernor(new DigitalBirdGameLogic(resources));
+
+		// 15.5 ms in the highest quality is just over 90% of the budget
+		final long fullScaleFrameTime = 15500000L;
+		int tierChanges = 0;
+		int lastTier = governor.getTier();
+		for (int window = 0; window < WINDOW_COUNT; ++window) {
+			final float scale = QualityGovernor.RENDER_SCALES[lastTier];
+			final long frameTime = (long) (fullScaleFrameTime * scale * scale);
+			for (int i = 0; i < QualityGovernor.WINDOW_SIZE; ++i)
+				governor.recordFrame(frameTime, VSYNC_PERIOD);
+
+			final int tier = governor.getTier();
+			if (tier != lastTier)
+				tierChanges++;
+			lastTier = tier;
+		}
+		assertEquals("The governor should lower the quality once", 1, tierChanges);
+		assertEquals(1, lastTier);
+	}
+}
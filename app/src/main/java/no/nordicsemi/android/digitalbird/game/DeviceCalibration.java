@@ -0,0 +1,192 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.WindowManager;
+
+import no.nordicsemi.android.digitalbird.game.entity.EntitySnapshot;
+import no.nordicsemi.android.digitalbird.game.entity.EntityStore;
+import no.nordicsemi.android.digitalbird.game.entity.MovementSystem;
+import no.nordicsemi.android.digitalbird.game.graphics.Background;
+import no.nordicsemi.android.digitalbird.game.graphics.DigitalBird;
+import no.nordicsemi.android.digitalbird.game.graphics.Pipe;
+import no.nordicsemi.android.digitalbird.game.graphics.Plane;
+import no.nordicsemi.android.digitalbird.game.graphics.SpriteRegistry;
+
+/**
+ * Selects the initial quality tier of the device. On the first launch a fixed scene is drawn with the real game objects into an offscreen
+ * bitmap of the display size for {@link #CALIBRATION_TIME}, and the tier is chosen from the average frame time, see
+ * {@link QualityGovernor#selectTier(long, long)}. The tier is saved, so later launches start with it immediately.
+ * <p>
+ * The device should be calibrated after the game objects are loaded, so that the loader threads do not slow down the scene. The objects
+ * of the scene use the sprites of the game and their bitmaps are recycled when done.</p>
+ * <p>
+ * The tier is saved together with the configuration it was measured for: the application version and the display size and density.
+ * When any of them changes, the device is calibrated again.</p>
+ */
+/* package */ class DeviceCalibration {
+	private static final String TAG = "DeviceCalibration";
+	private static final String PREFERENCES = "device_calibration";
+	private static final String PREFS_TIER = "tier";
+	private static final String PREFS_CONFIGURATION = "configuration";
+	/** The time the scene is drawn. */
+	private static final long CALIBRATION_TIME = 300; // [ms]
+	/** The frames drawn before measuring, e.g. to let the bitmaps be uploaded and caches filled. */
+	private static final int WARM_UP_FRAMES = 5;
+	/** The number of pipes on the screen. */
+	private static final int PIPE_COUNT = 2;
+
+	/**
+	 * Returns the tier saved on an earlier launch, if it was measured for the current configuration.
+	 * @param context the application context
+	 * @return the tier, or -1 if the device should be calibrated
+	 */
+	/* package */ static int getSavedTier(final Context context) {
+		final SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+		if (!getConfiguration(context).equals(preferences.getString(PREFS_CONFIGURATION, null)))
+			return -1;
+		final int tier = preferences.getInt(PREFS_TIER, -1);
+		return tier < QualityGovernor.TIER_COUNT ? tier : -1;
+	}
+
+	/**
+	 * Calibrates the device and saves the tier. This takes a few hundred milliseconds, so it should be called from a worker thread.
+	 * @param context the application context
+	 * @param sprites the sprites of the game
+	 * @return the selected tier
+	 */
+	/* package */ static int calibrate(final Context context, final SpriteRegistry sprites) {
+		// The game is played in portrait, the display metrics may still be in landscape while the activity is rotated
+		final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+		final int width = Math.min(metrics.widthPixels, metrics.heightPixels);
+		final int height = Math.max(metrics.widthPixels, metrics.heightPixels);
+		final long frameTime = measureFrameTime(sprites, width, height);
+		final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+		final long vsyncPeriod = (long) (1000000000L / windowManager.getDefaultDisplay().getRefreshRate());
+		final int tier = QualityGovernor.selectTier(frameTime, vsyncPeriod);
+		Log.i(TAG, "Average frame time " + frameTime / 1000 + " us at " + width + "x" + height + ", quality tier " + tier);
+
+		context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+				.putString(PREFS_CONFIGURATION, getConfiguration(context))
+				.putInt(PREFS_TIER, tier)
+				.apply();
+		return tier;
+	}
+
+	/**
+	 * Returns the configuration the tier depends on. The display size does not depend on the orientation.
+	 */
+	private static String getConfiguration(final Context context) {
+		int versionCode = 0;
+		try {
+			versionCode = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
+		} catch (final PackageManager.NameNotFoundException e) {
+			// Our own package is always found
+		}
+		final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+		return versionCode + ":" + Math.min(metrics.widthPixels, metrics.heightPixels) + "x" + Math.max(metrics.widthPixels, metrics.heightPixels)
+				+ ":" + metrics.densityDpi;
+	}
+
+	/**
+	 * Draws the scene, the background, the plane, pipes and the bird flying up and down, as fast as possible.
+	 * @return the average time of a frame in nanoseconds
+	 */
+	private static long measureFrameTime(final SpriteRegistry sprites, final int width, final int height) {
+		final Resources resources = sprites.getResources();
+		final Background background = new Background(sprites);
+		background.setScreenDimensions(width, height);
+		final int worldHeight = background.getGroundPositionY();
+		final DigitalBird bird = new DigitalBird(sprites);
+		bird.setScreenDimensions(width, worldHeight);
+		final Plane plane = new Plane(sprites);
+		plane.setScreenDimensions(width, worldHeight);
+		final Pipe pipe = new Pipe(sprites);
+		pipe.setScreenDimensions(width, worldHeight);
+
+		// Spread the pipes evenly over the screen
+		final EntityStore entities = new EntityStore(PIPE_COUNT);
+		final MovementSystem movement = new MovementSystem();
+		movement.setWorldSize(width, worldHeight);
+		for (int i = 0; i < PIPE_COUNT; ++i) {
+			pipe.spawn(entities, 0);
+			movement.saveState(entities);
+			movement.move(entities, width / PIPE_COUNT);
+		}
+
+		final Background.Snapshot backgroundSnapshot = new Background.Snapshot();
+		final DigitalBird.Snapshot birdSnapshot = new DigitalBird.Snapshot();
+		final Plane.Snapshot planeSnapshot = new Plane.Snapshot();
+		final EntitySnapshot entitiesSnapshot = new EntitySnapshot();
+		final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		final float scaledDeltaTime = Simulation.SIMULATION_STEP * resources.getDisplayMetrics().density * GameEngine.SPEED_MODIFIER;
+
+		long start = 0;
+		int frameCount = 0;
+		for (int i = 0; ; ++i) {
+			if (i == WARM_UP_FRAMES)
+				start = System.nanoTime();
+			else if (i > WARM_UP_FRAMES && System.nanoTime() - start >= CALIBRATION_TIME * 1000000L)
+				break;
+			if (i >= WARM_UP_FRAMES)
+				frameCount++;
+
+			if (i % 40 == 0)
+				bird.fly();
+			background.saveState();
+			background.move(scaledDeltaTime);
+			bird.saveState();
+			bird.move(scaledDeltaTime);
+			if (!bird.isAlive())
+				bird.reset();
+			plane.saveState();
+			plane.move(scaledDeltaTime);
+			background.writeSnapshot(backgroundSnapshot);
+			bird.writeSnapshot(birdSnapshot);
+			plane.writeSnapshot(planeSnapshot);
+			entities.writeSnapshot(entitiesSnapshot);
+
+			background.draw(canvas, backgroundSnapshot, 1.0f);
+			plane.draw(canvas, planeSnapshot, 1.0f);
+			for (int index = 0; index < entitiesSnapshot.size(); ++index)
+				pipe.draw(canvas, entitiesSnapshot, index, 1.0f);
+			bird.draw(canvas, birdSnapshot, 1.0f);
+		}
+		final long frameTime = (System.nanoTime() - start) / frameCount;
+		bitmap.recycle();
+		background.recycle();
+		bird.recycle();
+		pipe.recycle();
+		return frameTime;
+	}
+}
@@ -24,51 +24,161 @@ package no.nordicsemi.android.digitalbird.game;
 
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.os.Build;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
+import no.nordicsemi.android.digitalbird.R;
+import no.nordicsemi.android.digitalbird.game.entity.CollisionSystem;
+import no.nordicsemi.android.digitalbird.game.entity.EntitySnapshot;
+import no.nordicsemi.android.digitalbird.game.entity.EntityStore;
+import no.nordicsemi.android.digitalbird.game.entity.MovementSystem;
+import no.nordicsemi.android.digitalbird.game.entity.ScoringSystem;
+import no.nordicsemi.android.digitalbird.game.graphics.AssetLoader;
 import no.nordicsemi.android.digitalbird.game.graphics.Background;
 import no.nordicsemi.android.digitalbird.game.graphics.DigitalBird;
+import no.nordicsemi.android.digitalbird.game.graphics.EntityRenderer;
 import no.nordicsemi.android.digitalbird.game.graphics.Fireworks;
 import no.nordicsemi.android.digitalbird.game.graphics.Pipe;
 import no.nordicsemi.android.digitalbird.game.graphics.Plane;
+import no.nordicsemi.android.digitalbird.game.graphics.SpriteAtlas;
+import no.nordicsemi.android.digitalbird.game.graphics.SpriteBatch;
+import no.nordicsemi.android.digitalbird.game.graphics.SpriteRegistry;
 import no.nordicsemi.android.digitalbird.game.graphics.StatusBar;
 
 /**
  * This class is responsible for both the game logic and managing objects on the surface view.
+ * <p>
+ * Game objects are loaded asynchronously by the {@link AssetLoader}. The first frame is drawn as soon as the background and the bird are ready.
+ * Other objects appear when loaded.</p>
+ * <p>
+ * Only the simulation modifies the game objects. After each frame has been calculated the simulation writes the state of all objects into
+ * a preallocated {@link FrameSnapshot}, published through a lock-free {@link TripleBuffer}. Drawing reads only the published snapshots,
+ * so no lock is taken while frames are calculated or drawn. Requests from other threads, like resetting the objects, are passed as flags and
+ * handled by the simulation.</p>
+ * <p>
+ * Objects that come in numbers, the pipes, are entities in the {@link EntityStore}. Their state is kept in primitive arrays and updated by
+ * the systems in tight loops, and a single {@link EntityRenderer} per kind draws them all. The other objects are {@link
+ * no.nordicsemi.android.digitalbird.game.graphics.GameObject}s with their own state.</p>
+ * <p>
+ * When dirty regions are enabled only the areas covered by moving objects, in this or the last frame, are redrawn. The static layers of the
+ * background are not tracked, as they are drawn under every dirty region anyway. Moving objects whose bounds do not touch the area being
+ * redrawn, the screen or the dirty region, are not drawn at all.</p>
+ * <p>
+ * Sprites drawn from the atlas, the pipe columns and the bird rotations are collected into the shared {@link SpriteBatch} and submitted
+ * together. The batch is flushed before anything drawn directly on the canvas, so that the drawing order is kept.</p>
+ * <p>
+ * When adaptive quality is enabled, the {@link QualityGovernor} lowers the render scale, stops the ambient animations or limits the frame
+ * rate when frames take too long, and restores them when the load drops.</p>
  */
 public class DigitalBirdGameLogic extends GameLogic implements SurfaceHolder.Callback {
-	/** Object used for access synchronization. */
+	/**
+	 * The initial capacity of the entity store. We will have only 2 pipes on the screen, in most cases, with the default interval. The store
+	 * grows when the pipe interval is so short that more of them are on the screen at a time.
+	 */
+	private static final int INITIAL_ENTITY_CAPACITY = 4;
+	/** The maximum number of pipes. If the interval requires more, some pipes will be dropped. */
+	private static final int MAX_PIPE_COUNT = 32;
+
+	// Kinds of entities. The kind is the index of the renderer in mEntityRenderers.
+	private static final int KIND_PIPE = 0;
+	private static final int KIND_COUNT = 1;
+
+	/**
+	 * The state of all objects needed to draw a frame. A snapshot is not modified after it has been published, until the renderer releases it.
+	 */
+	private static class FrameSnapshot extends Frame {
+		private GameState state;
+		/** Flag set when the essential objects were ready. Otherwise other fields are not valid. */
+		private boolean essentialsReady;
+		private boolean planeVisible;
+		private boolean fireworksVisible;
+		private final Background.Snapshot background = new Background.Snapshot();
+		private final DigitalBird.Snapshot bird = new DigitalBird.Snapshot();
+		private final Plane.Snapshot plane = new Plane.Snapshot();
+		private final Fireworks.Snapshot fireworks = new Fireworks.Snapshot();
+		private final EntitySnapshot entities = new EntitySnapshot();
+	}
+
+	/** Object used for synchronization of the loader threads and screen dimension changes. */
 	private final Object mLock = new Object();
 	/**
-	 * The interval between two pipes in milliseconds.
-	 * There are 4 pipes available than can be on the screen simultaneously. If the interval is too short some may be skipped.
+	 * The interval between two pipes in milliseconds. The number of pipes grows when the interval is short, up to {@link #MAX_PIPE_COUNT}.
 	 */
-	private long mPipeInterval;
+	private volatile long mPipeInterval;
 	/**
 	 * The total time since the last pipe has been added. When the delay reach the {@link #mPipeInterval} a new pipe is added and the delay is reset.
 	 */
 	private long mPipeDelay;
 
-	// Game objects
-	/** The background. The background contains also the moving grass, therefore if has the {@link Background#move(float)} method. */
-	private Background mBackground;
+	/** Sprite bitmaps shared by all game objects. */
+	private SpriteRegistry mSprites;
+	/** The loader that creates game objects on worker threads. */
+	private AssetLoader mAssetLoader;
+	/** The color drawn until the background is loaded. */
+	private int mBackgroundColor;
+	/** The surface width, or 0 if unknown yet. */
+	private int mWidth;
+	/** The surface height. */
+	private int mHeight;
+	/**
+	 * Flag set when the essential objects (the background and the bird) have been loaded and all loaded objects have been given the screen
+	 * dimensions. Until then frames are only filled with the background color. The other objects may still be null afterwards.
+	 */
+	private volatile boolean mEssentialsReady;
+	/** Flag set when the objects should be reset by the simulation before the next step. */
+	private volatile boolean mResetRequested;
+	/** Flag set when the number of pipes should be checked by the simulation, as the interval or screen dimensions have changed. */
+	private volatile boolean mPipeCountInvalid;
+	/** The screen width and the height of the world above the ground, for which the pipes should be sized, or 0 if unknown. */
+	private volatile int mWorldWidth, mWorldHeight;
+	/** Flag set if the ambient animations, the plane and the fireworks, are shown. */
+	private volatile boolean mAmbientAnimationsEnabled = true;
+	/** The governor adapting the quality to the frame times, or null if the quality is fixed. */
+	private volatile QualityGovernor mQualityGovernor;
+	/** Flag set if sprites should be collected into the sprite batch, false to draw them one by one. */
+	private volatile boolean mSpriteBatchingEnabled = true;
+	/** Number of dropped pipes, copied from the entity store for other threads. */
+	private volatile int mDroppedPipeCount;
+	/** The world dimensions the entity systems have been set up for. Used only by the simulation. */
+	private int mSystemsWidth, mSystemsHeight;
+	/** The entities. Used only by the simulation, drawing uses the snapshots. */
+	private final EntityStore mEntities = new EntityStore(INITIAL_ENTITY_CAPACITY);
+	private final MovementSystem mMovementSystem = new MovementSystem();
+	private final CollisionSystem mCollisionSystem = new CollisionSystem();
+	private final ScoringSystem mScoringSystem = new ScoringSystem();
+	/** The hit box of the bird. Used only by the simulation. */
+	private final Rect mHitBox = new Rect();
+	/**
+	 * The renderers of entities, by kind. A renderer is set before entities of its kind are added, so it's always set when the entities are
+	 * drawn from a published snapshot.
+	 */
+	private final EntityRenderer[] mEntityRenderers = new EntityRenderer[KIND_COUNT];
+	/** A temporary rectangle for object bounds. Used only by the renderer thread. */
+	private final Rect mBounds = new Rect();
+	/** The area of the canvas being redrawn. Used only by the renderer thread. */
+	private final Rect mClipBounds = new Rect();
+	/** Number of objects drawn, and skipped, in the current frame. Used only by the renderer thread. */
+	private int mDrawnCount, mCulledCount;
+	/** The area covered by moving objects in the current frame. */
+	private final Rect mFrameRegion = new Rect();
+	/** The area covered by moving objects in the last frame. This area must be redrawn as well, as objects might have left it. */
+	private final Rect mLastFrameRegion = new Rect();
+
+	// Game objects. Objects are set by the loader threads.
+	/** The background. The background contains also the scrolling layers, therefore it has the {@link Background#move(float)} method. */
+	private volatile Background mBackground;
 	/** On Android Lollipop the status bar may also be drawn. This object will color if to a darker color. */
 	private StatusBar mStatusBar;
-	/** A queue of pipes that may be used for drawing. There is a limited number of pipes available. */
-	private Queue<Pipe> mPipes;
-	/** A queue of pipes added to the screen. */
-	private Queue<Pipe> mVisiblePipes;
+	/** The renderer of all pipes. Pipes are added to the entity store once it's loaded. */
+	private volatile Pipe mPipe;
 	/** The Digital Bird, of course :) */
-	private DigitalBird mBird;
+	private volatile DigitalBird mBird;
 	/** The Plane */
-	private Plane mPlane;
+	private volatile Plane mPlane;
 	/** Fireworks animation. */
-	private Fireworks mFireworks;
+	private volatile Fireworks mFireworks;
 
 	public DigitalBirdGameLogic(final SurfaceView surfaceView) {
 		super(surfaceView);
@@ -77,31 +187,96 @@ public class DigitalBirdGameLogic extends GameLogic implements SurfaceHolder.Cal
 	}
 
 	/**
-	 * Sets the interval between two pipes in milliseconds. There are 4 available pipes that can be drawn simultaneously. If the interval is too
-	 * short some of them may be skipped.
+	 * Creates the game without a surface. Use {@link #startRendering(no.nordicsemi.android.digitalbird.game.target.RenderTarget, int, int)}
+	 * to draw frames into an offscreen target.
+	 * @param resources application resources
+	 */
+	public DigitalBirdGameLogic(final Resources resources) {
+		super();
+
+		initGameObjects(resources);
+	}
+
+	/**
+	 * Sets the interval between two pipes in milliseconds. More pipes are created if the interval is so short that more pipes are on the
+	 * screen at a time. If the interval would need more than {@link #MAX_PIPE_COUNT} pipes, some of them are skipped and counted as dropped.
 	 * @param interval the interval between two pipes in milliseconds.
 	 */
 	public void setPipesInterval(final long interval) {
 		mPipeInterval = interval;
+		mPipeCountInvalid = true;
 	}
 
-	@Override
-	protected void onGameReady() {
-		synchronized (mLock) {
-			mPipes.addAll(mVisiblePipes);
-			mVisiblePipes.clear();
+	/**
+	 * Shows or hides the ambient animations: the plane and the fireworks. Hidden animations are not moved nor drawn.
+	 * @param enabled true to show the ambient animations
+	 */
+	public void setAmbientAnimationsEnabled(final boolean enabled) {
+		mAmbientAnimationsEnabled = enabled;
+		requestRender();
+	}
+
+	/**
+	 * Enables or disables adapting the quality to the frame times. While enabled, the governor controls the render scale, the ambient
+	 * animations and the frame rate. When disabled, the highest quality is restored.
+	 * @param enabled true to adapt the quality to the load
+	 */
+	public void setAdaptiveQualityEnabled(final boolean enabled) {
+		final QualityGovernor governor = mQualityGovernor;
+		if (enabled && governor == null) {
+			mQualityGovernor = new QualityGovernor(this);
+		} else if (!enabled && governor != null) {
+			mQualityGovernor = null;
+			if (governor.getTier() > 0)
+				governor.setTier(0, "adaptive quality disabled");
 		}
-		mBird.reset();
-		mFireworks.reset();
+	}
 
-		// Reset the pipe timer so that a new one will pop up in a fixed period of time.
-		mPipeDelay = 0L;
+	/**
+	 * Sets the quality tier, e.g. the one selected by the {@link DeviceCalibration}. When adaptive quality is enabled, the governor
+	 * continues from this tier.
+	 * @param tier the tier, 0 for the highest quality
+	 * @param reason the reason of the change, to be logged
+	 */
+	/* package */ void setQualityTier(final int tier, final String reason) {
+		QualityGovernor governor = mQualityGovernor;
+		if (governor == null)
+			governor = new QualityGovernor(this);
+		governor.setTier(tier, reason);
+	}
+
+	@Override
+	protected void onFrameDrawn(final long busyTime, final long vsyncPeriod) {
+		final QualityGovernor governor = mQualityGovernor;
+		if (governor != null)
+			governor.recordFrame(busyTime, vsyncPeriod);
+	}
+
+	/**
+	 * Enables or disables collecting sprites drawn from the atlas into a batch submitted with a single draw call.
+	 * @param enabled true to batch sprites, false to draw them one by one
+	 */
+	public void setSpriteBatchingEnabled(final boolean enabled) {
+		mSpriteBatchingEnabled = enabled;
+	}
+
+	/**
+	 * Returns the number of pipes that could not be added since the game was created, because there were not enough pipes for the pipe interval.
+	 */
+	public int getDroppedPipeCount() {
+		return mDroppedPipeCount;
+	}
+
+	@Override
+	protected void onGameReady() {
+		// The objects are being moved by the simulation, so they will be reset before the next step
+		mResetRequested = true;
 	}
 
 	@Override
 	protected void onGameStarted() {
 		// User has started the game with a button. We also want the bird to start flying at this moment.
-		mBird.fly();
+		fly();
 	}
 
 	/**
@@ -109,85 +284,291 @@ public class DigitalBirdGameLogic extends GameLogic implements SurfaceHolder.Cal
 	 * If game is not in {@link GameState#STARTED STARTED} state this method does nothing.
 	 */
 	public void fly() {
-		if (isGameStarted())
-			mBird.fly();
+		final DigitalBird bird = mBird;
+		if (isGameStarted() && bird != null)
+			bird.fly();
 	}
 
 	/**
-	 * This method initializes all static game objects.
+	 * This method initializes all static game objects. Objects with bitmaps are created asynchronously, the most important ones first.
 	 * @param resources application resources
 	 */
 	private void initGameObjects(final Resources resources) {
-		mBackground = new Background(resources);
-		mBird = new DigitalBird(resources);
-		mPlane = new Plane(resources);
-		mFireworks = new Fireworks(resources);
-
-		// Initialize 2 pipes. We will use only 2 of them, in most cases, but just to be sure we add more if the pipe interval was very small.
-		mPipes = new LinkedList<>();
-		mPipes.add(new Pipe(resources));
-		mPipes.add(new Pipe(resources));
-		mPipes.add(new Pipe(resources));
-		mPipes.add(new Pipe(resources));
-
-		// Pipes must be moved to this list in order to be drawn on the screen.
-		mVisiblePipes = new LinkedList<>();
+		final SpriteRegistry sprites = mSprites = new SpriteRegistry(resources);
+		mBackgroundColor = resources.getColor(R.color.background);
 
 		// The status bar may be drawn only on devices with Android Lollipop or newer.
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
 			mStatusBar = new StatusBar(resources);
 		}
+
+		// Each page of the atlas is decoded by its own task, at the priority of the objects using it. The objects wait only for their page.
+		final AssetLoader loader = mAssetLoader = new AssetLoader();
+		loader.load(AssetLoader.PRIORITY_ESSENTIAL, new Runnable() {
+			@Override
+			public void run() {
+				sprites.decodePage(SpriteAtlas.PAGE_ESSENTIAL);
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_ESSENTIAL, new Runnable() {
+			@Override
+			public void run() {
+				final Background background = new Background(sprites);
+				synchronized (mLock) {
+					mBackground = background;
+					updateScreenDimensions();
+				}
+				requestRender();
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_ESSENTIAL, new Runnable() {
+			@Override
+			public void run() {
+				final DigitalBird bird = new DigitalBird(sprites);
+				synchronized (mLock) {
+					mBird = bird;
+					updateScreenDimensions();
+				}
+				requestRender();
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_GAMEPLAY, new Runnable() {
+			@Override
+			public void run() {
+				final Pipe pipe = new Pipe(sprites);
+				synchronized (mLock) {
+					if (mEssentialsReady)
+						pipe.setScreenDimensions(mWidth, mBackground.getGroundPositionY());
+					mEntityRenderers[KIND_PIPE] = pipe;
+					mPipe = pipe;
+					mPipeCountInvalid = true;
+				}
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_AMBIENT, new Runnable() {
+			@Override
+			public void run() {
+				sprites.decodePage(SpriteAtlas.PAGE_AMBIENT);
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_AMBIENT, new Runnable() {
+			@Override
+			public void run() {
+				final Plane plane = new Plane(sprites);
+				synchronized (mLock) {
+					if (mEssentialsReady)
+						plane.setScreenDimensions(mWidth, mBackground.getGroundPositionY());
+					mPlane = plane;
+				}
+				requestRender();
+			}
+		});
+		loader.load(AssetLoader.PRIORITY_AMBIENT, new Runnable() {
+			@Override
+			public void run() {
+				final Fireworks fireworks = new Fireworks(sprites);
+				synchronized (mLock) {
+					if (mEssentialsReady)
+						fireworks.setScreenDimensions(mWidth, mBackground.getGroundPositionY());
+					mFireworks = fireworks;
+				}
+				requestRender();
+			}
+		});
+		loader.shutdown();
+	}
+
+	/**
+	 * Waits until all game objects are loaded.
+	 * @param timeout the maximum time to wait in milliseconds
+	 * @return true if all objects are loaded, false if the timeout elapsed before
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	/* package */ boolean awaitObjectsLoaded(final long timeout) throws InterruptedException {
+		return mAssetLoader.awaitTermination(timeout);
+	}
+
+	/**
+	 * Returns the sprites shared by the game objects, e.g. to create other objects without decoding the atlas again.
+	 */
+	/* package */ SpriteRegistry getSpriteRegistry() {
+		return mSprites;
+	}
+
+	/**
+	 * Sets the screen dimensions to all loaded objects. The essential objects become ready when the background, the bird and the surface size
+	 * are known. Objects loaded before that are sized here, those loaded afterwards are sized before they are published.
+	 * This method must be called with {@link #mLock} held.
+	 */
+	private void updateScreenDimensions() {
+		final Background background = mBackground;
+		final int width = mWidth;
+		if (background == null || width == 0)
+			return;
+
+		background.setScreenDimensions(width, mHeight);
+		final int worldHeight = background.getGroundPositionY();
+		mWorldHeight = worldHeight;
+		mWorldWidth = width;
+		mPipeCountInvalid = true;
+		if (mBird != null)
+			mBird.setScreenDimensions(width, worldHeight);
+		if (mPipe != null)
+			mPipe.setScreenDimensions(width, worldHeight);
+		if (mPlane != null)
+			mPlane.setScreenDimensions(width, worldHeight);
+		if (mFireworks != null)
+			mFireworks.setScreenDimensions(width, worldHeight);
+
+		if (mStatusBar != null)
+			mStatusBar.setScreenDimensions(width, mHeight);
+
+		mEssentialsReady = mBird != null;
+		requestFullRedraw();
+	}
+
+	/**
+	 * Sets up the entity systems for the current world dimensions and makes sure that the entity store is big enough for the pipe interval.
+	 * The store is allocated only when it grows.
+	 * @param pipe the pipe renderer, or null if not loaded yet
+	 */
+	private void prepareEntities(final Pipe pipe) {
+		final int width = mWorldWidth;
+		final int height = mWorldHeight;
+		if (width != mSystemsWidth || height != mSystemsHeight) {
+			mMovementSystem.setWorldSize(width, height);
+			mSystemsWidth = width;
+			mSystemsHeight = height;
+		}
+
+		if (mPipeCountInvalid && pipe != null) {
+			mPipeCountInvalid = false;
+			final int required = Math.min(getRequiredPipeCount(width, pipe.getWidth()), MAX_PIPE_COUNT);
+			if (required > mEntities.getCapacity())
+				mEntities.ensureCapacity(Integer.highestOneBit(required - 1) * 2);
+		}
+	}
+
+	/**
+	 * Calculates how many pipes may be on the screen at a time.
+	 * @param width the screen width
+	 * @param pipeWidth the width of a pipe
+	 * @return the number of pipes needed
+	 */
+	private int getRequiredPipeCount(final int width, final int pipeWidth) {
+		final long interval = mPipeInterval;
+		final float speed = getGameSpeed(); // [px/ms]
+		if (interval <= 0 || speed <= 0)
+			return 0;
+
+		// The time a pipe spends on the screen, from being added at the right edge until it's released behind the left one.
+		final float lifetime = (width + pipeWidth) / speed;
+		// One more, as a pipe may be added in the same step as the oldest one becomes releasable.
+		return (int) Math.ceil(lifetime / interval) + 1;
+	}
+
+	/**
+	 * Moves the objects to their initial positions. All entities are released.
+	 */
+	private void resetObjects() {
+		mEntities.clear();
+		mBird.reset();
+		final Fireworks fireworks = mFireworks;
+		if (fireworks != null)
+			fireworks.reset();
+
+		// Reset the pipe timer so that a new one will pop up in a fixed period of time.
+		mPipeDelay = 0L;
+	}
+
+	/**
+	 * Resets the objects if requested since the last simulation step. This is called before each step, and before a frame is written, as
+	 * no step may be calculated before the frame is published.
+	 */
+	private void applyPendingReset() {
+		if (mResetRequested) {
+			mResetRequested = false;
+			resetObjects();
+		}
+	}
+
+	@Override
+	public RenderMode getRenderMode(final GameState state) {
+		switch (state) {
+			case INITIALIZING:
+			case PAUSED:
+				// Nothing is moving in these states
+				return RenderMode.IDLE;
+			case OVER:
+				// Only the plane and fireworks are animated, if shown
+				return mAmbientAnimationsEnabled ? RenderMode.AMBIENT : RenderMode.IDLE;
+			default:
+				return RenderMode.CONTINUOUS;
+		}
 	}
 
 	@Override
 	public void calculateFrame(final long deltaTime, final GameState state) {
-		final DigitalBird bird = mBird; // for optimization
+		// Nothing can be calculated before the essential objects are loaded.
+		if (!mEssentialsReady)
+			return;
+
+		// Local copies for optimization. Fields are volatile.
+		final Background background = mBackground;
+		final DigitalBird bird = mBird;
+		final boolean ambientAnimationsEnabled = mAmbientAnimationsEnabled;
+		final Plane plane = ambientAnimationsEnabled ? mPlane : null;
+		final Fireworks fireworks = ambientAnimationsEnabled ? mFireworks : null;
+		final Pipe pipe = mPipe;
+		final EntityStore entities = mEntities;
+		prepareEntities(pipe);
+
+		applyPendingReset();
 
 		// Calculate the translation based on the interval between two frames and the game speed.
 		final float scaledDeltaTime = deltaTime * getGameSpeed();
 
+		// Remember the current positions so that the frame may be drawn in between this and the next state.
+		background.saveState();
+		bird.saveState();
+		if (plane != null)
+			plane.saveState();
+		if (fireworks != null)
+			fireworks.saveState();
+		mMovementSystem.saveState(entities);
+
 		switch (state) {
 			case STARTED:
-				mPipeDelay += deltaTime;
-
-				// First check if any pipe can't be removed
-				synchronized (mLock) {
-					for (final Pipe pipe : mVisiblePipes) {
-						if (pipe.isPipeReadyToRelease()) {
-							mPipes.add(mVisiblePipes.poll());
-							break;
-						}
-					}
-
-					// Add a new pipe if the time has came
+				// Add a new pipe if the time has came
+				if (pipe != null) {
+					mPipeDelay += deltaTime;
 					if (mPipeDelay > mPipeInterval) {
-						final Pipe pipe = mPipes.poll();
-						if (pipe != null)
-							mVisiblePipes.add(pipe.reset());
+						if (pipe.spawn(entities, KIND_PIPE) < 0)
+							mDroppedPipeCount = entities.getDroppedCount();
 						mPipeDelay = 0L;
 					}
+				}
 
-					// Move all pipes that are visible
-					for (final Pipe pipe : mVisiblePipes) {
-						pipe.move(scaledDeltaTime);
-						if (pipe.isPipeScored(bird))
-							score(1);
-					}
-
-					// Check the bird's collision with pipes
-					for (final Pipe pipe : mVisiblePipes)
-						if (pipe.checkCollision(bird)) {
-							onGameFinishing();
-							break;
-						}
+				// Move all entities, releasing those that are no longer visible, and check the score and the bird's collision with pipes
+				mMovementSystem.move(entities, scaledDeltaTime);
+				if (pipe != null) {
+					final int passed = mScoringSystem.update(entities, bird.getPositionX(), pipe.getScoringWidth());
+					if (passed > 0)
+						score(passed);
+				}
+				bird.getHitBox(mHitBox);
+				if (mCollisionSystem.findCollision(entities, mHitBox) >= 0) {
+					bird.hit();
+					onGameFinishing();
 				}
 
-				// Move the grass in the background
-				mBackground.move(scaledDeltaTime);
+				// Scroll the background layers
+				background.move(scaledDeltaTime);
 
 				// Fly, Digital Bird, fly!
 				bird.move(scaledDeltaTime);
-				mPlane.move(scaledDeltaTime);
+				if (plane != null)
+					plane.move(scaledDeltaTime);
 				if (!bird.isAlive()) {
 					onGameOver();
 					break;
@@ -195,12 +576,14 @@ public class DigitalBirdGameLogic extends GameLogic implements SurfaceHolder.Cal
 				break;
 			case READY:
 				// In the initializing state the grass is moving and the bird is flying straight.
-				mBackground.move(scaledDeltaTime);
+				background.move(scaledDeltaTime);
 				bird.move(scaledDeltaTime);
-				mPlane.move(scaledDeltaTime);
+				if (plane != null)
+					plane.move(scaledDeltaTime);
 				break;
 			case FINISHING:
-				mPlane.move(scaledDeltaTime);
+				if (plane != null)
+					plane.move(scaledDeltaTime);
 				// When Digital Bird hits the pipe, it falls down until hits the ground.
 				if (bird.isAlive())
 					bird.move(scaledDeltaTime);
@@ -208,42 +591,163 @@ public class DigitalBirdGameLogic extends GameLogic implements SurfaceHolder.Cal
 					onGameOver();
 				break;
 			case OVER:
-				mPlane.move(scaledDeltaTime);
-				mFireworks.move(scaledDeltaTime);
+				if (plane != null)
+					plane.move(scaledDeltaTime);
+				if (fireworks != null)
+					fireworks.move(scaledDeltaTime);
 				break;
 		}
 	}
 
 	@Override
-	public void drawFrame(final Canvas canvas, final GameState state) {
+	protected Frame createFrame() {
+		return new FrameSnapshot();
+	}
+
+	@Override
+	protected void writeFrame(final Frame frame) {
+		final FrameSnapshot snapshot = (FrameSnapshot) frame;
+		final GameState state = getGameState();
+		final boolean essentialsReady = mEssentialsReady;
+		snapshot.state = state;
+		snapshot.essentialsReady = essentialsReady;
+
+		if (essentialsReady) {
+			// Otherwise the frame of the new state would show the objects as they were when the last game ended
+			applyPendingReset();
+
+			final boolean ambientAnimationsEnabled = mAmbientAnimationsEnabled;
+			final Plane plane = ambientAnimationsEnabled ? mPlane : null;
+			final Fireworks fireworks = ambientAnimationsEnabled ? mFireworks : null;
+
+			mBackground.writeSnapshot(snapshot.background);
+			mBird.writeSnapshot(snapshot.bird);
+			snapshot.planeVisible = plane != null;
+			if (plane != null)
+				plane.writeSnapshot(snapshot.plane);
+			snapshot.fireworksVisible = fireworks != null && isRecordBeaten() && GameState.OVER.equals(state);
+			if (fireworks != null)
+				fireworks.writeSnapshot(snapshot.fireworks);
+			mEntities.writeSnapshot(snapshot.entities);
+		}
+	}
+
+	@Override
+	protected boolean getDirtyRegion(final Rect dirty) {
+		final FrameSnapshot snapshot = (FrameSnapshot) getFrame();
+
+		// Until the essential objects are loaded the whole frame is filled with the background color.
+		if (!snapshot.essentialsReady) {
+			mLastFrameRegion.setEmpty();
+			return false;
+		}
+
+		final GameState state = snapshot.state;
+		final Rect region = mFrameRegion;
+		final Rect bounds = mBounds;
+		region.setEmpty();
+
+		// The background layers are moving only in these states
+		if (GameState.READY.equals(state) || GameState.STARTED.equals(state)) {
+			mBackground.getScrollingBounds(bounds);
+			region.union(bounds);
+		}
+		if (snapshot.fireworksVisible) {
+			mFireworks.getBounds(snapshot.fireworks, bounds);
+			region.union(bounds);
+		}
+		if (snapshot.planeVisible) {
+			mPlane.getBounds(snapshot.plane, bounds);
+			region.union(bounds);
+		}
+		final EntitySnapshot entities = snapshot.entities;
+		for (int i = 0; i < entities.size(); ++i) {
+			mEntityRenderers[entities.getKind(i)].getBounds(entities, i, bounds);
+			region.union(bounds);
+		}
+		mBird.getBounds(snapshot.bird, bounds);
+		region.union(bounds);
+
+		dirty.set(region);
+		dirty.union(mLastFrameRegion);
+		mLastFrameRegion.set(region);
+		return true;
+	}
+
+	@Override
+	public void drawFrame(final Canvas canvas, final GameState state, final float interpolation) {
+		// Only the acquired snapshot is drawn. The game state is taken from the snapshot too, as it might have changed since.
+		final FrameSnapshot snapshot = (FrameSnapshot) getFrame();
+
+		// Until the essential objects are loaded only the background color is drawn.
+		if (!snapshot.essentialsReady) {
+			canvas.drawColor(mBackgroundColor);
+			return;
+		}
+
 		// The order of drawing is important. First the background, to clear the previous frame, then fireworks, pipes, the bird, and finally status bar on Lolliopo only.
-		mBackground.draw(canvas);
-		if (isRecordBeaten() && GameState.OVER.equals(state))
-			mFireworks.draw(canvas);
-		mPlane.draw(canvas);
-		synchronized (mLock) {
-			for (final Pipe pipe : mVisiblePipes)
-				pipe.draw(canvas);
+		// The fireworks and the plane are batched together, then all pipes from their column cache, then the bird from its rotation cache.
+		// With the caches disabled pipes draw their shafts directly, so the batch is flushed before them, and the bird flushes it itself.
+		// Moving objects outside of the area being redrawn are culled. The background and the status bar cover the whole screen.
+		final SpriteBatch batch = mSprites.getSpriteBatch();
+		if (mSpriteBatchingEnabled)
+			batch.begin(canvas);
+		final Rect bounds = mBounds;
+		if (!canvas.getClipBounds(mClipBounds))
+			mClipBounds.setEmpty();
+		mDrawnCount = mCulledCount = 0;
+
+		mBackground.draw(canvas, snapshot.background, interpolation);
+		if (snapshot.fireworksVisible) {
+			mFireworks.getBounds(snapshot.fireworks, bounds);
+			if (isVisible(bounds))
+				mFireworks.draw(canvas, snapshot.fireworks, interpolation);
+		}
+		if (snapshot.planeVisible) {
+			mPlane.getBounds(snapshot.plane, bounds);
+			if (isVisible(bounds))
+				mPlane.draw(canvas, snapshot.plane, interpolation);
+		}
+		batch.flush();
+		final EntitySnapshot entities = snapshot.entities;
+		for (int i = 0; i < entities.size(); ++i) {
+			final EntityRenderer renderer = mEntityRenderers[entities.getKind(i)];
+			renderer.getBounds(entities, i, bounds);
+			if (isVisible(bounds))
+				renderer.draw(canvas, entities, i, interpolation);
 		}
-		mBird.draw(canvas);
+		mBird.getBounds(snapshot.bird, bounds);
+		if (isVisible(bounds))
+			mBird.draw(canvas, snapshot.bird, interpolation);
+		batch.end();
 		if (mStatusBar != null)
-			mStatusBar.draw(canvas);
+			mStatusBar.draw(canvas, null, interpolation);
+		getFrameProfiler().recordCulling(mDrawnCount, mCulledCount);
 
 
 		// Other user controls are handled by the Activity, not the GameLogic.
 	}
 
+	/**
+	 * Returns whether an object with the given bounds touches the area being redrawn, and counts it as drawn or culled.
+	 * @param bounds the bounds of the object
+	 * @return true if the object should be drawn
+	 */
+	private boolean isVisible(final Rect bounds) {
+		if (Rect.intersects(mClipBounds, bounds)) {
+			mDrawnCount++;
+			return true;
+		}
+		mCulledCount++;
+		return false;
+	}
+
 	@Override
 	public void onSurfaceChanged(int format, int width, int height) {
-		mBackground.setScreenDimensions(width, height);
-		final int worldHeight = mBackground.getGroundPositionY();
-		for (final Pipe pipe : mPipes)
-			pipe.setScreenDimensions(width, worldHeight);
-		mBird.setScreenDimensions(width, worldHeight);
-		mPlane.setScreenDimensions(width, worldHeight);
-		mFireworks.setScreenDimensions(width, worldHeight);
-
-		if (mStatusBar != null)
-			mStatusBar.setScreenDimensions(width, height);
+		synchronized (mLock) {
+			mWidth = width;
+			mHeight = height;
+			updateScreenDimensions();
+		}
 	}
 }
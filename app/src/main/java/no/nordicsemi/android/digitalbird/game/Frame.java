@@ -0,0 +1,54 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+/**
+ * A calculated frame handed over from the simulation to the renderer. Game logics extend this class with the state of their objects,
+ * see {@link GameLogic#createFrame()}. Frames are preallocated and reused.
+ */
+public class Frame {
+	/** The time the calculation of the frame started, in nanoseconds, or 0 if the frame has not been calculated yet. */
+	private long mCalculationTime;
+	/** The interpolation factor the frame should be drawn with. */
+	private float mInterpolation;
+
+	/* package */ void set(final long calculationTime, final float interpolation) {
+		mCalculationTime = calculationTime;
+		mInterpolation = interpolation;
+	}
+
+	/**
+	 * Returns the time the calculation of the frame started, in the {@link System#nanoTime()} time base, or 0 if the frame has not been
+	 * calculated yet.
+	 */
+	public long getCalculationTime() {
+		return mCalculationTime;
+	}
+
+	/**
+	 * Returns the time between the previous (0.0) and the last (1.0) simulation step at which objects should be drawn.
+	 */
+	public float getInterpolation() {
+		return mInterpolation;
+	}
+}
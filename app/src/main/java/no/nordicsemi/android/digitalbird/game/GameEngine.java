@@ -22,9 +22,15 @@
 
 package no.nordicsemi.android.digitalbird.game;
 
+import android.content.Context;
 import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.SurfaceView;
 
+import no.nordicsemi.android.digitalbird.game.stats.FrameStats;
+
 public class GameEngine implements GameLogic.GameStateListener {
 	private static final String TAG = "GameEngine";
 
@@ -32,13 +38,18 @@ public class GameEngine implements GameLogic.GameStateListener {
 	 * The speed modifier. The bigger number, the faster the game will be.
 	 * The speed modifier concerns all objects, including the bird.
 	 */
-	private static final float SPEED_MODIFIER = 0.125f;
+	/* package */ static final float SPEED_MODIFIER = 0.125f;
 
 	/**
 	 * The interval between pipes, in milliseconds.
 	 */
 	private static final long PIPES_INTERVAL = 2400; // [ms]
 
+	/**
+	 * The maximum time to wait for the game objects before calibrating the device, in milliseconds.
+	 */
+	private static final long LOADING_TIMEOUT = 10000; // [ms]
+
 	public interface GameListener {
 		/**
 		 * User has scored points.
@@ -56,6 +67,21 @@ public class GameEngine implements GameLogic.GameStateListener {
 
 	private DigitalBirdGameLogic mGameLogic;
 	private GameListener mGameListener;
+	/** The handler of the UI thread, where the statistics are logged. */
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	/**
+	 * Logs the frame statistics. Creating the summary allocates objects, so it's done on the UI thread rather than on the simulation thread
+	 * that finishes the game.
+	 */
+	private final Runnable mLogStatsTask = new Runnable() {
+		@Override
+		public void run() {
+			Log.i(TAG, "Game over, frame stats: " + getFrameStats());
+			final int droppedPipes = mGameLogic.getDroppedPipeCount();
+			if (droppedPipes > 0)
+				Log.w(TAG, droppedPipes + " pipes dropped, the pipe interval is too short");
+		}
+	};
 
 	public GameEngine(final SurfaceView surfaceView) {
 		// Calculate the game speed. The game speed depends on the screen density.
@@ -67,8 +93,36 @@ public class GameEngine implements GameLogic.GameStateListener {
 		// Initialize the renderer
 		mGameLogic = new DigitalBirdGameLogic(surfaceView);
 		mGameLogic.setGameSpeed(speed);
+		mGameLogic.setVsyncEnabled(true);
 		mGameLogic.setGameStateListener(this);
 		mGameLogic.setPipesInterval(PIPES_INTERVAL);
+		mGameLogic.setAdaptiveQualityEnabled(true);
+
+		// Start with the quality tier suitable for the device. The device is calibrated on the first launch.
+		final Context context = surfaceView.getContext().getApplicationContext();
+		final int tier = DeviceCalibration.getSavedTier(context);
+		if (tier >= 0) {
+			if (tier > 0)
+				mGameLogic.setQualityTier(tier, "calibrated on an earlier launch");
+		} else {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					// The scene is measured when the loader threads are done, and drawn with the already decoded sprites
+					try {
+						if (!mGameLogic.awaitObjectsLoaded(LOADING_TIMEOUT)) {
+							Log.w(TAG, "Game objects not loaded, device not calibrated");
+							return;
+						}
+					} catch (final InterruptedException e) {
+						return;
+					}
+					final int tier = DeviceCalibration.calibrate(context, mGameLogic.getSpriteRegistry());
+					if (tier > 0)
+						mGameLogic.setQualityTier(tier, "device calibrated");
+				}
+			}, "DeviceCalibration").start();
+		}
 	}
 
 	public GameState getGameState() {
@@ -107,6 +161,68 @@ public class GameEngine implements GameLogic.GameStateListener {
 		mGameLogic.fly();
 	}
 
+	/**
+	 * Enables or disables calculating the next frame on a separate thread while the current one is drawn. This helps on multi-core devices
+	 * where a single thread can't calculate and draw a frame within a display refresh, but adds a frame of latency, see {@link FrameStats#latency}.
+	 * The new value is used when the surface is created.
+	 * @param enabled true to pipeline the simulation and drawing
+	 */
+	public void setPipeliningEnabled(final boolean enabled) {
+		mGameLogic.setPipeliningEnabled(enabled);
+	}
+
+	/**
+	 * Sets the number of horizontal bands frames are split into, each rasterized on a separate core. The new value is used when the surface
+	 * is created. Frames are split only on Android Marshmallow or newer.
+	 * @param bandCount the number of bands, 1 to rasterize frames on a single thread
+	 */
+	public void setRasterBandCount(final int bandCount) {
+		mGameLogic.setRasterBandCount(bandCount);
+	}
+
+	/**
+	 * Enables or disables adapting the quality to the load of the device. When frames take too long, the render scale is lowered, ambient
+	 * animations are stopped or the frame rate is limited, and restored when the device copes again. Enabled by default.
+	 * @param enabled true to adapt the quality, false to keep the highest quality
+	 */
+	public void setAdaptiveQualityEnabled(final boolean enabled) {
+		mGameLogic.setAdaptiveQualityEnabled(enabled);
+	}
+
+	/**
+	 * Sets the resolution frames are drawn in, relative to the screen, e.g. 0.75 or 0.5. The compositor scales the frames up.
+	 * The game looks the same, only less sharp, while the cost of filling pixels falls with the square of the scale.
+	 * @param scale the render scale in range (0.0, 1.0]
+	 */
+	public void setRenderScale(final float scale) {
+		mGameLogic.setRenderScale(scale);
+	}
+
+	/**
+	 * Enables or disables redrawing only the regions of the screen that changed since the last frame.
+	 * The average fraction of the screen redrawn per frame is reported in the {@link FrameStats}.
+	 * @param enabled true to redraw only the changed regions
+	 */
+	public void setDirtyRegionsEnabled(final boolean enabled) {
+		mGameLogic.setDirtyRegionsEnabled(enabled);
+	}
+
+	/**
+	 * Enables or disables collecting the sprites of a frame into a batch, drawn with a single call.
+	 * @param enabled true to batch sprites, false to draw them one by one
+	 */
+	public void setSpriteBatchingEnabled(final boolean enabled) {
+		mGameLogic.setSpriteBatchingEnabled(enabled);
+	}
+
+	/**
+	 * Returns a snapshot of frame timing statistics: latency percentiles of each phase of a frame and the number of dropped frames.
+	 * @return frame timing statistics since the game engine was created
+	 */
+	public FrameStats getFrameStats() {
+		return mGameLogic.getFrameStats();
+	}
+
 	@Override
 	public void onPointsScored(final int pointsScored, final int totalPoints) {
 		if (mGameListener != null)
@@ -115,6 +231,7 @@ public class GameEngine implements GameLogic.GameStateListener {
 
 	@Override
 	public boolean onGameOver(final int totalPoints) {
+		mHandler.post(mLogStatsTask);
 		return mGameListener != null && mGameListener.onGameOver(totalPoints);
 	}
 }
@@ -23,13 +23,34 @@
 package no.nordicsemi.android.digitalbird.game;
 
 import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.util.Log;
+import android.view.Display;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
-
-/** A basic API for a game. */
+import android.view.View;
+
+import no.nordicsemi.android.digitalbird.game.stats.FrameProfiler;
+import no.nordicsemi.android.digitalbird.game.stats.FrameStats;
+import no.nordicsemi.android.digitalbird.game.target.BandedRenderTarget;
+import no.nordicsemi.android.digitalbird.game.target.RenderTarget;
+import no.nordicsemi.android.digitalbird.game.target.SurfaceRenderTarget;
+
+/**
+ * A basic API for a game.
+ * <p>
+ * Frames are drawn into a {@link RenderTarget}. A game created with a {@link SurfaceView} draws on its surface, and renders whenever the surface
+ * exists. A game created without one renders only between {@link #startRendering(RenderTarget, int, int)} and {@link #stopRendering()}, which
+ * allows the whole game loop to run headless.</p>
+ * <p>
+ * The surface may be smaller than the view, see {@link #setRenderScale(float)}. The game still sees the view size: the canvas is scaled
+ * to the surface, and the compositor scales the surface up to the view.</p>
+ */
 public abstract class GameLogic implements SurfaceHolder.Callback {
 	private static final String TAG = "GameLogic";
+	/** The refresh rate assumed when the display is not known. */
+	private static final float DEFAULT_REFRESH_RATE = 60.0f; // [Hz]
 
 	public interface GameStateListener {
 		/**
@@ -52,13 +73,21 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 	 */
 	private GameStateListener mGameStateListener;
 	/**
-	 * The Surface view to draw frames on.
+	 * The Surface view to draw frames on, or null if the game is rendered headless.
 	 */
 	private final SurfaceView mSurfaceView;
+	/**
+	 * The target frames are drawn into.
+	 */
+	private volatile RenderTarget mRenderTarget;
 	/**
 	 * The thread that calculates and draws the frames. The frames are then drawn on the SurfaceView in the UI thread.
 	 */
-	private GameRendererThread mThread;
+	private volatile GameRendererThread mThread;
+	/**
+	 * Frame timing statistics. The profiler outlives renderer threads, which are recreated together with the surface.
+	 */
+	private final FrameProfiler mFrameProfiler = new FrameProfiler();
 	/**
 	 * The current game state.
 	 * @see GameState
@@ -76,6 +105,67 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 	 * Flag set to true when the record was beaten.
 	 */
 	private boolean mRecordBeaten;
+	/**
+	 * Flag set to true if frames should be drawn in sync with the display refresh, false to draw them as fast as possible.
+	 */
+	private boolean mVsyncEnabled;
+	/**
+	 * Flag set to true if frames should be calculated on a separate thread, while the previous frame is drawn.
+	 */
+	private boolean mPipeliningEnabled;
+	/**
+	 * The number of bands the frames are split into, each rasterized on a separate thread. 1 to rasterize frames on the renderer thread.
+	 */
+	private int mRasterBandCount = 1;
+	/**
+	 * The target rasterizing frames in bands, wrapping the render target, or null if frames are drawn into the render target directly.
+	 */
+	private volatile BandedRenderTarget mBandedTarget;
+	/**
+	 * The number of display refreshes per frame when objects are moving. 1 to draw a frame on every refresh.
+	 */
+	private volatile int mFrameInterval = 1;
+	/**
+	 * The fraction of the view resolution frames are drawn in. Used only by the UI thread.
+	 */
+	private float mRenderScale = 1.0f;
+	/**
+	 * The surface size requested for the render scale, and the view size it was requested for, or 0 if the surface is sized by the layout.
+	 * Used only by the UI thread.
+	 */
+	private int mFixedWidth, mFixedHeight, mLayoutWidth, mLayoutHeight;
+	/**
+	 * The scale from the game coordinates to the pixels of the render target.
+	 */
+	private volatile float mTargetScaleX = 1.0f, mTargetScaleY = 1.0f;
+	/**
+	 * Flag set when the canvas of the current frame has been scaled. Used only by the renderer thread.
+	 */
+	private boolean mCanvasScaled;
+	/**
+	 * Frames handed over from the simulation to the renderer.
+	 */
+	private final TripleBuffer<Frame> mFrames;
+	/**
+	 * Flag set to true if only the regions that changed since the last frame should be redrawn.
+	 */
+	private volatile boolean mDirtyRegionsEnabled;
+	/**
+	 * Flag set when the next frame has to be redrawn completely, e.g. after the surface has been recreated.
+	 */
+	private volatile boolean mFullRedrawRequested;
+	/**
+	 * The region that is redrawn in the current frame. Used only by the renderer thread.
+	 */
+	private final Rect mDirtyRegion = new Rect();
+	/**
+	 * The render target dimensions, used to calculate the fraction of the target that is redrawn.
+	 */
+	private volatile int mTargetWidth, mTargetHeight;
+	/**
+	 * The game dimensions last passed to {@link #onSurfaceChanged(int, int, int)}. A change of the render scale resizes only the target.
+	 */
+	private int mGameWidth, mGameHeight;
 
 	/**
 	 * Basic constructor of the game logic. Initializes the surface and sets the game state to {@link GameState#INITIALIZING}.
@@ -83,8 +173,28 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 	 */
 	public GameLogic(final SurfaceView surfaceView) {
 		mSurfaceView = surfaceView;
+		mRenderTarget = new SurfaceRenderTarget(surfaceView.getHolder());
 		surfaceView.getHolder().addCallback(this);
+		surfaceView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+			@Override
+			public void onLayoutChange(final View v, final int left, final int top, final int right, final int bottom,
+									   final int oldLeft, final int oldTop, final int oldRight, final int oldBottom) {
+				// The surface size depends on the view size
+				applyRenderScale();
+			}
+		});
 
+		mFrames = new TripleBuffer<>(createFrame(), createFrame(), createFrame());
+		mGameState = GameState.INITIALIZING;
+	}
+
+	/**
+	 * Constructor of a game without a surface. Frames are drawn only after {@link #startRendering(RenderTarget, int, int)} has been called.
+	 */
+	protected GameLogic() {
+		mSurfaceView = null;
+
+		mFrames = new TripleBuffer<>(createFrame(), createFrame(), createFrame());
 		mGameState = GameState.INITIALIZING;
 	}
 
@@ -100,6 +210,149 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 		mGameSpeed = speed;
 	}
 
+	/**
+	 * Enables or disables drawing frames in sync with the display refresh using the {@link android.view.Choreographer}.
+	 * When disabled, frames are drawn as fast as the canvas can be locked. The new value is used when the surface is created.
+	 * @param enabled true to pace frames with vsync
+	 */
+	public final void setVsyncEnabled(final boolean enabled) {
+		mVsyncEnabled = enabled;
+	}
+
+	/**
+	 * Enables or disables pipelining. When enabled, frames are calculated on a separate thread while the previous frame is being drawn.
+	 * This uses 2 CPU cores instead of 1, at the price of one more frame of latency. The new value is used when the surface is created.
+	 * @param enabled true to calculate and draw frames on separate threads
+	 */
+	public final void setPipeliningEnabled(final boolean enabled) {
+		mPipeliningEnabled = enabled;
+	}
+
+	/**
+	 * Sets the number of horizontal bands the frames are split into. Each band is rasterized on a separate thread, see {@link BandedRenderTarget}.
+	 * This helps on devices with many cores and a slow single thread. The new value is used when the surface is created. On devices where
+	 * {@link BandedRenderTarget#isSupported()} returns false, frames are always rasterized on the renderer thread.
+	 * @param bandCount the number of bands, 1 to rasterize frames on the renderer thread
+	 */
+	public final void setRasterBandCount(final int bandCount) {
+		if (bandCount < 1)
+			throw new IllegalArgumentException("At least one band is required");
+		mRasterBandCount = bandCount;
+	}
+
+	/**
+	 * Limits the frame rate to a fraction of the display refresh rate. Display refreshes skipped on purpose are not counted as dropped frames.
+	 * @param interval the number of display refreshes per frame, 1 to draw a frame on every refresh, 2 for a half of the refresh rate, etc.
+	 */
+	public final void setFrameInterval(final int interval) {
+		if (interval < 1)
+			throw new IllegalArgumentException("The frame interval must be at least 1");
+		mFrameInterval = interval;
+	}
+
+	/**
+	 * Returns the number of display refreshes per frame.
+	 */
+	public final int getFrameInterval() {
+		return mFrameInterval;
+	}
+
+	/**
+	 * Sets the render scale from any thread. The scale is applied on the UI thread, see {@link #setRenderScale(float)}.
+	 * Games without a surface ignore the render scale.
+	 * @param scale the render scale in range (0.0, 1.0]
+	 */
+	protected final void postRenderScale(final float scale) {
+		final SurfaceView surfaceView = mSurfaceView;
+		if (surfaceView == null)
+			return;
+		surfaceView.post(new Runnable() {
+			@Override
+			public void run() {
+				setRenderScale(scale);
+			}
+		});
+	}
+
+	/**
+	 * Sets the resolution of the surface relative to the view, e.g. 0.75 or 0.5. The surface buffer is made smaller with
+	 * {@link SurfaceHolder#setFixedSize(int, int)} and the compositor scales it up to the view. The game objects are not affected: they are
+	 * sized for the view, and the canvas is scaled to the surface. The cost of filling pixels falls with the square of the scale.
+	 * This method must be called from the UI thread.
+	 * @param scale the render scale in range (0.0, 1.0], 1.0 to draw in the view resolution
+	 */
+	public final void setRenderScale(final float scale) {
+		if (scale <= 0.0f || scale > 1.0f)
+			throw new IllegalArgumentException("The render scale must be in range (0.0, 1.0]");
+		mRenderScale = scale;
+		if (mSurfaceView != null)
+			applyRenderScale();
+	}
+
+	/**
+	 * Sizes the surface according to the render scale and the view size. Unless the size changes, the surface is not resized, as that
+	 * would request another layout.
+	 */
+	private void applyRenderScale() {
+		final SurfaceView surfaceView = mSurfaceView;
+		final int width = surfaceView.getWidth();
+		final int height = surfaceView.getHeight();
+		if (width == 0 || height == 0)
+			return; // the scale is applied on the layout
+
+		final SurfaceHolder holder = surfaceView.getHolder();
+		if (mRenderScale >= 1.0f) {
+			if (mFixedWidth > 0) {
+				mFixedWidth = mFixedHeight = 0;
+				holder.setSizeFromLayout();
+			}
+			return;
+		}
+
+		final int fixedWidth = Math.max(Math.round(width * mRenderScale), 1);
+		final int fixedHeight = Math.max(Math.round(height * mRenderScale), 1);
+		if (fixedWidth == mFixedWidth && fixedHeight == mFixedHeight && width == mLayoutWidth && height == mLayoutHeight)
+			return;
+		mFixedWidth = fixedWidth;
+		mFixedHeight = fixedHeight;
+		mLayoutWidth = width;
+		mLayoutHeight = height;
+		holder.setFixedSize(fixedWidth, fixedHeight);
+	}
+
+	/**
+	 * Enables or disables redrawing only the regions that changed since the last frame. The region is obtained from
+	 * {@link #getDirtyRegion(Rect)} and the canvas is locked with this region, so that the content outside of it is preserved.
+	 * @param enabled true to redraw only the changed regions, false to redraw the whole frame every time
+	 */
+	public final void setDirtyRegionsEnabled(final boolean enabled) {
+		mFullRedrawRequested = true;
+		mDirtyRegionsEnabled = enabled;
+	}
+
+	/**
+	 * Makes the next frame to be redrawn completely, even if dirty regions are enabled. This should be called whenever the content of the
+	 * whole frame may have changed.
+	 */
+	protected final void requestFullRedraw() {
+		mFullRedrawRequested = true;
+	}
+
+	/**
+	 * Returns the profiler the renderer records frame timings in.
+	 */
+	/* package */ FrameProfiler getFrameProfiler() {
+		return mFrameProfiler;
+	}
+
+	/**
+	 * Returns a snapshot of frame timing statistics collected since the game was created.
+	 * @return frame timing statistics
+	 */
+	public final FrameStats getFrameStats() {
+		return mFrameProfiler.getFrameStats();
+	}
+
 	/**
 	 * Returns the game speed modifier. This should be multiplied by the time interval to calculate the objects translation.
 	 */
@@ -138,6 +391,7 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 		mRecordBeaten = false;
 		mGameState = GameState.INITIALIZING;
 		onGameInitialized();
+		requestRender();
 	}
 
 	/**
@@ -149,6 +403,7 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 			mRecordBeaten = false;
 			mGameState = GameState.READY;
 			onGameReady();
+			requestRender();
 		}
 	}
 
@@ -159,6 +414,7 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 		if (GameState.READY.equals(mGameState)) {
 			mGameState = GameState.STARTED;
 			onGameStarted();
+			requestRender();
 		}
 	}
 
@@ -169,6 +425,7 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 		if (GameState.PAUSED.equals(mGameState)) {
 			mGameState = GameState.READY;
 			onGameResumed();
+			requestRender();
 		}
 	}
 
@@ -179,9 +436,38 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 		if (GameState.STARTED.equals(mGameState)) {
 			mGameState = GameState.PAUSED;
 			onGamePaused();
+			requestRender();
 		}
 	}
 
+	/**
+	 * Wakes up the renderer so that a new frame is drawn even if the scene was static.
+	 */
+	protected final void requestRender() {
+		final GameRendererThread thread = mThread;
+		if (thread != null)
+			thread.requestRender();
+	}
+
+	/**
+	 * Returns how often frames should be drawn in the given state. By default frames are drawn continuously.
+	 * Override this method to save CPU in states where nothing, or only ambient animations, are moving.
+	 * @param state the current game state
+	 * @return the render mode
+	 */
+	public RenderMode getRenderMode(final GameState state) {
+		return RenderMode.CONTINUOUS;
+	}
+
+	/**
+	 * Callback called by the renderer thread after each drawn frame.
+	 * @param busyTime the time the frame took to calculate, draw and post, excluding waiting for the canvas, in nanoseconds
+	 * @param vsyncPeriod the duration of a single display refresh in nanoseconds
+	 */
+	protected void onFrameDrawn(final long busyTime, final long vsyncPeriod) {
+		// empty default implementation
+	}
+
 	/**
 	 * Callback called when the game has been initialized.
 	 */
@@ -244,34 +530,147 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 	}
 
 	/**
-	 * Moves all objects according to the deltaTime parameter.
-	 * @param deltaTime the delta time since the last frame.
+	 * Moves all objects according to the deltaTime parameter. The simulation calls this method with a fixed time step, possibly several times
+	 * (or not at all) per drawn frame. When pipelining is enabled, this is called on another thread than {@link #drawFrame(Canvas, GameState, float)}.
+	 * @param deltaTime the simulation time step in milliseconds.
 	 * @param state the current game state
 	 */
 	public abstract void calculateFrame(final long deltaTime, final GameState state);
 
+	/**
+	 * Creates a frame object. Game logics that draw objects moved by the simulation should return a subclass of {@link Frame} holding the state
+	 * of the objects, and write it in {@link #writeFrame(Frame)}. This is called 3 times from the constructor, so it must not depend on the state
+	 * of the game logic.
+	 * @return a new frame
+	 */
+	protected Frame createFrame() {
+		return new Frame();
+	}
+
+	/**
+	 * Writes the state of the objects to the given frame, after the simulation steps of the frame have been calculated. The frame is then
+	 * drawn, possibly on another thread while the next frame is being calculated, so drawing should use only the state written here.
+	 * The default implementation does nothing.
+	 * @param frame the frame to write to, created by {@link #createFrame()}. The frame is reused, so all its fields must be written.
+	 */
+	protected void writeFrame(final Frame frame) {
+		// empty default implementation
+	}
+
+	/**
+	 * Publishes a frame after its simulation steps have been calculated, also if no step was necessary.
+	 * @param calculationTime the time the calculation of the frame started, in nanoseconds
+	 * @param interpolation the time between the previous (0.0) and the last (1.0) simulation step at which objects should be drawn
+	 */
+	public final void publishFrame(final long calculationTime, final float interpolation) {
+		final Frame frame = mFrames.getBack();
+		frame.set(calculationTime, interpolation);
+		writeFrame(frame);
+		mFrames.publish();
+	}
+
+	/**
+	 * Acquires the most recently published frame. The acquired frame is used by {@link #getDirtyRegion(Rect)} and
+	 * {@link #drawFrame(Canvas, GameState, float)} until the next call.
+	 * @return the acquired frame
+	 */
+	public final Frame acquireFrame() {
+		mFrames.acquire();
+		return mFrames.getFront();
+	}
+
+	/**
+	 * Returns the frame acquired by the renderer. This must be called only while drawing.
+	 */
+	protected final Frame getFrame() {
+		return mFrames.getFront();
+	}
+
 	/**
 	 * Draws a frame on the canvas.
 	 * @param canvas the canvas to draw on. This should be acquired using {@link #lockCanvas()} method and released using {@link #unlockCanvasAndPost(Canvas)}.
 	 * @param state the current game state
+	 * @param interpolation the time between the previous (0.0) and the last (1.0) simulation step at which objects should be drawn
 	 */
-	public abstract void drawFrame(final Canvas canvas, final GameState state);
+	public abstract void drawFrame(final Canvas canvas, final GameState state, final float interpolation);
 
 	/**
-	 * Callback called when the dimensions of the surface has changed.
+	 * Callback called when the dimensions of the surface, or the render target, has changed.
 	 * @param format the new PixelFormat of the surface
 	 * @param width the new width of the surface
 	 * @param height the new height of the surface
 	 */
 	public abstract void onSurfaceChanged(final int format, final int width, final int height);
 
+	/**
+	 * Calculates the region of the surface that must be redrawn in the next frame. This method is called from the renderer thread before each
+	 * frame, after the simulation steps, when dirty regions are enabled. The region must cover everything that changed since the last drawn
+	 * frame, including the areas that the objects have left. The region may assume that the frame is drawn: if the canvas can't be locked,
+	 * the next frame is redrawn as a whole. The default implementation requests the whole frame.
+	 * @param dirty the rectangle to be set to the dirty region
+	 * @return true if the dirty region has been set, false if the whole frame should be redrawn
+	 */
+	protected boolean getDirtyRegion(final Rect dirty) {
+		return false;
+	}
+
 	/**
 	 * Locks the renderer surface for drawing. The locked surface is then returned. It must be unlocked using {@link #unlockCanvasAndPost(Canvas)}
-	 * in order the changes to be visible for a user.
+	 * in order the changes to be visible for a user. If dirty regions are enabled, the canvas is clipped to the region returned by
+	 * {@link #getDirtyRegion(Rect)} and the content outside of it is preserved from the last frame.
 	 * @return locked canvas
 	 */
 	public Canvas lockCanvas() {
-		return mSurfaceView.getHolder().lockCanvas();
+		final RenderTarget target = getTarget();
+		if (target == null)
+			return null;
+		final long totalPixels = (long) mTargetWidth * mTargetHeight;
+
+		if (mDirtyRegionsEnabled) {
+			// The dirty region must be calculated every frame, as it also depends on the last frame
+			final Rect dirty = mDirtyRegion;
+			final boolean dirtyRegionValid = getDirtyRegion(dirty);
+			if (mFullRedrawRequested) {
+				mFullRedrawRequested = false;
+			} else if (dirtyRegionValid && !dirty.isEmpty()) {
+				// The region is in the game coordinates, the target is locked in its pixels
+				final float scaleX = mTargetScaleX;
+				final float scaleY = mTargetScaleY;
+				if (scaleX != 1.0f || scaleY != 1.0f)
+					dirty.set((int) Math.floor(dirty.left * scaleX), (int) Math.floor(dirty.top * scaleY),
+							(int) Math.ceil(dirty.right * scaleX), (int) Math.ceil(dirty.bottom * scaleY));
+				final Canvas canvas = target.lockCanvas(dirty);
+				// The surface may extend the region if the content of the last frame could not be preserved
+				if (canvas != null)
+					mFrameProfiler.recordCoverage(Math.min((long) dirty.width() * dirty.height(), totalPixels), totalPixels);
+				else
+					mFullRedrawRequested = true;
+				return scaleCanvas(canvas);
+			}
+		}
+
+		final Canvas canvas = target.lockCanvas(null);
+		if (canvas != null)
+			mFrameProfiler.recordCoverage(totalPixels, totalPixels);
+		else
+			mFullRedrawRequested = true;
+		return scaleCanvas(canvas);
+	}
+
+	/**
+	 * Scales the locked canvas from the game coordinates to the target pixels, if they differ.
+	 * @param canvas the locked canvas, or null
+	 * @return the canvas
+	 */
+	private Canvas scaleCanvas(final Canvas canvas) {
+		final float scaleX = mTargetScaleX;
+		final float scaleY = mTargetScaleY;
+		mCanvasScaled = canvas != null && (scaleX != 1.0f || scaleY != 1.0f);
+		if (mCanvasScaled) {
+			canvas.save();
+			canvas.scale(scaleX, scaleY);
+		}
+		return canvas;
 	}
 
 	/**
@@ -279,34 +678,120 @@ public abstract class GameLogic implements SurfaceHolder.Callback {
 	 * @param canvas the canvas that has been locked before
 	 */
 	public void unlockCanvasAndPost(final Canvas canvas) {
-		mSurfaceView.getHolder().unlockCanvasAndPost(canvas);
+		if (mCanvasScaled) {
+			mCanvasScaled = false;
+			canvas.restore();
+		}
+		getTarget().unlockCanvasAndPost(canvas);
 	}
 
-	@Override
-	public void surfaceCreated(final SurfaceHolder holder) {
-		mThread = new GameRendererThread(this);
-		mThread.start();
+	/**
+	 * Returns the target the renderer draws into: the banded target if frames are rasterized in bands, the render target otherwise.
+	 */
+	private RenderTarget getTarget() {
+		final BandedRenderTarget bandedTarget = mBandedTarget;
+		return bandedTarget != null ? bandedTarget : mRenderTarget;
 	}
 
-	@Override
-	public void surfaceChanged(final SurfaceHolder holder, final int format, final int width, final int height) {
-		onSurfaceChanged(format, width, height);
+	/**
+	 * Starts drawing frames into the given target, e.g. an offscreen bitmap. This is meant for games created without a surface,
+	 * as games with a surface render whenever the surface exists. Call {@link #stopRendering()} to stop.
+	 * @param target the target to draw frames into
+	 * @param width the target width
+	 * @param height the target height
+	 */
+	public final void startRendering(final RenderTarget target, final int width, final int height) {
+		mRenderTarget = target;
+		startRendererThread(DEFAULT_REFRESH_RATE);
+		onTargetSizeChanged(PixelFormat.UNKNOWN, width, height, width, height);
 	}
 
-	@Override
-	public void surfaceDestroyed(final SurfaceHolder holder) {
-		mThread.killThread();
+	/**
+	 * Stops drawing frames and waits until the renderer thread finishes.
+	 */
+	public final void stopRendering() {
+		final GameRendererThread thread = mThread;
+		if (thread == null)
+			return;
+		thread.killThread();
 
 		// Wait until the thread will die
 		boolean retry = true;
 
 		while (retry) {
 			try {
-				mThread.join();
+				thread.join();
 				retry = false;
 			} catch (Exception e) {
-				Log.e(TAG, "Destroying surface failed", e);
+				Log.e(TAG, "Stopping the renderer failed", e);
 			}
 		}
+		mThread = null;
+
+		final BandedRenderTarget bandedTarget = mBandedTarget;
+		if (bandedTarget != null) {
+			mBandedTarget = null;
+			bandedTarget.release();
+		}
+	}
+
+	private void startRendererThread(final float refreshRate) {
+		if (mRasterBandCount > 1 && BandedRenderTarget.isSupported())
+			mBandedTarget = new BandedRenderTarget(mRenderTarget, mRasterBandCount);
+		if (mVsyncEnabled) {
+			mThread = new VsyncRendererThread(this, refreshRate, mPipeliningEnabled);
+		} else {
+			mThread = new GameRendererThread(this, refreshRate, mPipeliningEnabled);
+		}
+		// The new target does not contain the last frame
+		mFullRedrawRequested = true;
+		mThread.start();
+	}
+
+	/**
+	 * Handles the change of the target size. The game is notified only if its own dimensions have changed, so that a change of the render
+	 * scale does not reset the objects.
+	 * @param format the pixel format
+	 * @param width the target width in pixels
+	 * @param height the target height in pixels
+	 * @param gameWidth the width of the game, the target is scaled to
+	 * @param gameHeight the height of the game
+	 */
+	private void onTargetSizeChanged(final int format, final int width, final int height, final int gameWidth, final int gameHeight) {
+		mTargetWidth = width;
+		mTargetHeight = height;
+		mTargetScaleX = (float) width / gameWidth;
+		mTargetScaleY = (float) height / gameHeight;
+		// The redraw is requested first, so that a frame drawn into the resized target is not limited to the dirty region
+		mFullRedrawRequested = true;
+		final BandedRenderTarget bandedTarget = mBandedTarget;
+		if (bandedTarget != null)
+			bandedTarget.setSize(width, height);
+		if (gameWidth != mGameWidth || gameHeight != mGameHeight) {
+			mGameWidth = gameWidth;
+			mGameHeight = gameHeight;
+			onSurfaceChanged(format, gameWidth, gameHeight);
+		}
+		requestRender();
+	}
+
+	@Override
+	public void surfaceCreated(final SurfaceHolder holder) {
+		final Display display = mSurfaceView.getDisplay();
+		startRendererThread(display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE);
+	}
+
+	@Override
+	public void surfaceChanged(final SurfaceHolder holder, final int format, final int width, final int height) {
+		// If the surface has the requested fixed size, the game keeps the view size. Otherwise the surface is sized by the layout.
+		if (mFixedWidth > 0 && width == mFixedWidth && height == mFixedHeight)
+			onTargetSizeChanged(format, width, height, mLayoutWidth, mLayoutHeight);
+		else
+			onTargetSizeChanged(format, width, height, width, height);
+	}
+
+	@Override
+	public void surfaceDestroyed(final SurfaceHolder holder) {
+		stopRendering();
 	}
 }
@@ -23,18 +23,57 @@
 package no.nordicsemi.android.digitalbird.game;
 
 import android.graphics.Canvas;
-import android.os.SystemClock;
+import android.util.Log;
+
+import no.nordicsemi.android.digitalbird.game.stats.FrameProfiler;
 
 /**
  * The thread for frames calculation and drawing. Frames are drawn in the other thread not to block the main UI thread.
+ * <p>
+ * Frames are calculated by the fixed time step {@link Simulation}, either on this thread, right before drawing, or on a separate
+ * {@link SimulationThread} when pipelining is enabled. In the latter case the next frame is calculated while the current one is drawn.</p>
+ * <p>
+ * The duration of each phase of a frame, the number of display refreshes that passed without a new frame, and the latency from the start of
+ * the calculation of a frame until it has been posted, are recorded in the {@link FrameProfiler} of the game logic.</p>
+ * <p>
+ * When objects are moving, a frame is drawn every {@link GameLogic#getFrameInterval()} display refreshes.</p>
  */
 public class GameRendererThread extends Thread {
+	private static final String TAG = "GameRendererThread";
+
+	/** The delay before the next attempt to lock the canvas if the surface was not ready. */
+	private static final long SURFACE_RETRY_DELAY = 10; // [ms]
+	/** The interval between frames in {@link RenderMode#AMBIENT} mode. */
+	/* package */ static final long AMBIENT_FRAME_INTERVAL = 50; // [ms]
+
+	/** The lock used to park the thread when there is nothing to animate. */
+	private final Object mParkLock = new Object();
+
 	private GameLogic mGameLogic;
-	private boolean mStopped;
-	private long mLastTimestamp;
+	private final FrameProfiler mFrameProfiler;
+	private final Simulation mSimulation;
+	/** The thread calculating frames ahead, or null if frames are calculated on this thread. */
+	private final SimulationThread mSimulationThread;
+	/** The duration of a single display refresh in nanoseconds. */
+	private final long mVsyncPeriod;
+	private volatile boolean mStopped;
+	/** Flag set when a new frame has been requested. The thread will not park until it draws the next frame. */
+	private boolean mRenderRequested;
+	/** The timestamp of the last drawn frame in nanoseconds, used to count dropped frames, or 0 if the next interval should not be counted. */
+	private long mLastFrameTime;
 
-	public GameRendererThread(final GameLogic logic) {
+	/**
+	 * Creates the thread.
+	 * @param logic the game logic
+	 * @param refreshRate the display refresh rate in frames per second
+	 * @param pipelined true to calculate frames on a separate thread, one frame ahead
+	 */
+	public GameRendererThread(final GameLogic logic, final float refreshRate, final boolean pipelined) {
 		mGameLogic = logic;
+		mFrameProfiler = logic.getFrameProfiler();
+		mSimulation = new Simulation(logic);
+		mSimulationThread = pipelined ? new SimulationThread(mSimulation) : null;
+		mVsyncPeriod = (long) (1000000000L / refreshRate);
 		mStopped = false;
 	}
 
@@ -44,32 +83,205 @@ public class GameRendererThread extends Thread {
 	public void killThread() {
 		// Just change the flag here. The thread will stop itself in a moment.
 		mStopped = true;
+
+		// Wake up the thread if it's parked
+		synchronized (mParkLock) {
+			mParkLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Requests a new frame to be drawn. This should be called whenever the scene may have changed while the thread is parked,
+	 * e.g. when the game state changed. Calling this method while frames are drawn continuously does nothing.
+	 */
+	public void requestRender() {
+		synchronized (mParkLock) {
+			mRenderRequested = true;
+			mParkLock.notifyAll();
+		}
 	}
 
 	@Override
 	public synchronized void start() {
 		// Initialize the clock.
-		mLastTimestamp = SystemClock.elapsedRealtime();
+		mSimulation.start(System.nanoTime());
+		if (mSimulationThread != null)
+			mSimulationThread.start();
 		super.start();
 	}
 
+	/**
+	 * Stops the simulation thread, if frames are pipelined. This must be called by the renderer thread before it finishes.
+	 */
+	protected void stopSimulation() {
+		if (mSimulationThread != null)
+			mSimulationThread.killThread();
+	}
+
+	/**
+	 * Returns true if the thread has been requested to stop.
+	 */
+	protected boolean isStopped() {
+		return mStopped;
+	}
+
+	/**
+	 * Returns the duration of a single display refresh in nanoseconds.
+	 */
+	protected long getVsyncPeriod() {
+		return mVsyncPeriod;
+	}
+
+	/**
+	 * Returns the number of display refreshes per frame when objects are moving.
+	 */
+	protected int getFrameInterval() {
+		return mGameLogic.getFrameInterval();
+	}
+
+	/**
+	 * Returns the render mode for the current game state.
+	 */
+	protected RenderMode getRenderMode() {
+		return mGameLogic.getRenderMode(mGameLogic.getGameState());
+	}
+
+	/**
+	 * Makes the next frame start the simulation from its own timestamp, so that the time elapsed since the last frame is not simulated.
+	 * This must be called from the renderer thread.
+	 */
+	protected void resetClock() {
+		mSimulation.resetClock();
+		skipFrameInterval();
+	}
+
+	/**
+	 * Makes the interval until the next frame not to be counted for dropped frames. This should be called when frames are skipped on purpose.
+	 * This must be called from the renderer thread.
+	 */
+	protected void skipFrameInterval() {
+		mLastFrameTime = 0;
+	}
+
 	@Override
 	public void run() {
-		while (!mStopped) {
-			// Try to lock the canvas for drawing.
-			final Canvas canvas = mGameLogic.lockCanvas();
-
-			if (canvas != null) {
-				// Draw a frame on success. Pass the delta time as an argument so that the game engine could calculate speed.
-				final long timestamp = SystemClock.elapsedRealtime();
-				final GameState state = mGameLogic.getGameState();
-				mGameLogic.calculateFrame(timestamp - mLastTimestamp, state);
-				mGameLogic.drawFrame(canvas, state);
-				mLastTimestamp = timestamp;
-
-				// Finally, unlock the canvas.
-				mGameLogic.unlockCanvasAndPost(canvas);
+		try {
+			while (!mStopped) {
+				final long frameStart = System.nanoTime();
+				if (!renderFrame(frameStart)) {
+					// The surface is not ready yet. Don't spin, wait a moment before trying again.
+					try {
+						sleep(SURFACE_RETRY_DELAY);
+					} catch (final InterruptedException e) {
+						Log.w(TAG, "Renderer thread interrupted", e);
+					}
+					continue;
+				}
+
+				switch (getRenderMode()) {
+					case CONTINUOUS:
+						// Wait for the rest of the frame interval if the frame rate is limited
+						final int frameInterval = getFrameInterval();
+						if (frameInterval > 1) {
+							final long wait = (frameInterval * mVsyncPeriod - (System.nanoTime() - frameStart)) / 1000000L;
+							if (wait > 0)
+								park(wait);
+						}
+						break;
+					case AMBIENT:
+						// Draw the next frame when the ambient frame interval has passed, or earlier if requested.
+						final long remaining = AMBIENT_FRAME_INTERVAL - (System.nanoTime() - frameStart) / 1000000L;
+						if (remaining > 0)
+							park(remaining);
+						skipFrameInterval();
+						break;
+					case IDLE:
+						// Nothing is moving. Wait until something changes. The time spent here must not be simulated.
+						park(0);
+						resetClock();
+						break;
+				}
 			}
+		} finally {
+			stopSimulation();
 		}
 	}
+
+	/**
+	 * Blocks the thread until a new frame is requested, the thread is stopped or the timeout elapses.
+	 * @param timeout the maximum time to wait in milliseconds, 0 to wait until requested
+	 */
+	private void park(final long timeout) {
+		synchronized (mParkLock) {
+			if (!mRenderRequested && !mStopped) {
+				try {
+					mParkLock.wait(timeout);
+				} catch (final InterruptedException e) {
+					Log.w(TAG, "Renderer thread interrupted", e);
+				}
+			}
+			mRenderRequested = false;
+		}
+	}
+
+	/**
+	 * Calculates the frame for the given time, locks the canvas, draws the frame and posts it. The frame is calculated first, so that the region
+	 * that has changed is known when the canvas is locked.
+	 * <p>
+	 * When frames are pipelined, the most recent frame calculated by the simulation thread is drawn instead, and the calculation of the frame
+	 * to be drawn next is requested before drawing starts. Frames are pipelined only while drawn continuously. Otherwise the
+	 * thread may park after this frame and the requested one would not be drawn, so the frame is calculated here, after the simulation
+	 * thread has finished its last frame.</p>
+	 * @param timestamp the frame time in nanoseconds, in the {@link System#nanoTime()} time base
+	 * @return true if the frame has been drawn, false if the canvas could not be locked
+	 */
+	protected boolean renderFrame(final long timestamp) {
+		final FrameProfiler profiler = mFrameProfiler;
+		final SimulationThread simulationThread = mSimulationThread;
+		final long calculationStart = System.nanoTime();
+
+		final Frame frame;
+		if (simulationThread != null && getRenderMode() == RenderMode.CONTINUOUS) {
+			frame = mGameLogic.acquireFrame();
+			// The next frame is drawn after the frame interval, which may span more display refreshes
+			simulationThread.requestFrame(timestamp + mVsyncPeriod * mGameLogic.getFrameInterval());
+		} else {
+			if (simulationThread != null)
+				simulationThread.awaitIdle();
+			mSimulation.calculateFrame(timestamp);
+			frame = mGameLogic.acquireFrame();
+		}
+
+		// Try to lock the canvas for drawing.
+		final long lockStart = System.nanoTime();
+		final Canvas canvas = mGameLogic.lockCanvas();
+		if (canvas == null)
+			return false;
+		final long lockEnd = System.nanoTime();
+		profiler.recordPhase(FrameProfiler.PHASE_LOCK_CANVAS, lockEnd - lockStart);
+
+		// Draw a frame on success.
+		mGameLogic.drawFrame(canvas, mGameLogic.getGameState(), frame.getInterpolation());
+		final long drawEnd = System.nanoTime();
+		profiler.recordPhase(FrameProfiler.PHASE_DRAW_FRAME, drawEnd - lockEnd);
+
+		// Finally, unlock the canvas.
+		mGameLogic.unlockCanvasAndPost(canvas);
+		final long unlockEnd = System.nanoTime();
+		profiler.recordPhase(FrameProfiler.PHASE_UNLOCK_CANVAS_AND_POST, unlockEnd - drawEnd);
+		if (frame.getCalculationTime() > 0)
+			profiler.recordLatency(unlockEnd - frame.getCalculationTime());
+
+		// Count frame intervals that passed since the previous frame without a new frame.
+		final long framePeriod = mVsyncPeriod * mGameLogic.getFrameInterval();
+		int droppedFrames = 0;
+		if (mLastFrameTime > 0)
+			droppedFrames = (int) ((timestamp - mLastFrameTime + framePeriod / 2) / framePeriod - 1);
+		mLastFrameTime = timestamp;
+		profiler.recordFrame(droppedFrames);
+
+		// The time spent waiting for the canvas is not the cost of the frame
+		mGameLogic.onFrameDrawn(unlockEnd - calculationStart - (lockEnd - lockStart), mVsyncPeriod);
+		return true;
+	}
 }
@@ -0,0 +1,155 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Adapts the quality of the game to the load of the device, e.g. when it gets slower as it heats up. The governor collects the busy time
+ * of frames drawn by the renderer and, after every window of {@link #WINDOW_SIZE} frames, compares their 90th percentile with the frame
+ * budget, the time between frames.
+ * <p>
+ * The quality is lowered by one tier as soon as the frames take too much of the budget. Each lower tier draws fewer pixels, stops the ambient
+ * animations (the plane and fireworks) or limits the frame rate. The quality is raised only after a number of windows in a row whose frames
+ * would fit well within the budget of the higher tier. Their time in the higher tier is predicted from the number of pixels it draws.
+ * The gap between both thresholds prevents switching tiers back and forth.</p>
+ * <p>
+ * The initial tier may be selected by the {@link DeviceCalibration}. Each change of the tier is logged with its reason. Frames are recorded
+ * by the renderer thread and nothing is allocated, unless the tier changes.</p>
+ */
+/* package */ class QualityGovernor {
+	private static final String TAG = "QualityGovernor";
+
+	/** The number of frames whose percentile is compared with the budget. */
+	/* package */ static final int WINDOW_SIZE = 120;
+	/** The quality is lowered when the 90th percentile of the frame time exceeds this fraction of the budget. */
+	private static final float LOWER_THRESHOLD = 0.9f;
+	/** The quality is raised when the 90th percentile of the frame time is below this fraction of the budget of the higher tier. */
+	private static final float RAISE_THRESHOLD = 0.6f;
+	/** The number of windows in a row below the raise threshold needed to raise the quality. */
+	private static final int RAISE_WINDOW_COUNT = 5;
+
+	// The quality tiers, from the highest one
+	/* package */ static final float[] RENDER_SCALES = { 1.0f, 0.75f, 0.75f, 0.5f, 0.5f };
+	private static final boolean[] AMBIENT_ANIMATIONS = { true, true, false, false, false };
+	private static final int[] FRAME_INTERVALS = { 1, 1, 1, 1, 2 };
+	/* package */ static final int TIER_COUNT = RENDER_SCALES.length;
+
+	private final DigitalBirdGameLogic mGameLogic;
+	/** The busy times of frames in the current window, in nanoseconds. */
+	private final long[] mFrameTimes = new long[WINDOW_SIZE];
+	private int mFrameCount;
+	/** The number of windows in a row that would fit in the budget of the higher tier. */
+	private int mCalmWindowCount;
+	/** The current tier, 0 for the highest quality. */
+	private volatile int mTier;
+
+	/* package */ QualityGovernor(final DigitalBirdGameLogic logic) {
+		mGameLogic = logic;
+	}
+
+	/**
+	 * Selects the highest quality tier whose frames would fit well within the budget, assuming that the frame time falls with the number
+	 * of pixels drawn.
+	 * @param frameTime the frame time in the highest quality, in nanoseconds
+	 * @param vsyncPeriod the duration of a single display refresh in nanoseconds
+	 * @return the tier, 0 for the highest quality
+	 */
+	/* package */ static int selectTier(final long frameTime, final long vsyncPeriod) {
+		for (int tier = 0; tier < TIER_COUNT - 1; ++tier) {
+			final float scale = RENDER_SCALES[tier];
+			if (frameTime * scale * scale < vsyncPeriod * FRAME_INTERVALS[tier] * RAISE_THRESHOLD)
+				return tier;
+		}
+		return TIER_COUNT - 1;
+	}
+
+	/**
+	 * Returns the current quality tier, 0 for the highest quality.
+	 */
+	/* package */ int getTier() {
+		return mTier;
+	}
+
+	/**
+	 * Applies the settings of the given tier to the game. The tier may be set also when the governor is not used, e.g. to restore
+	 * the highest quality.
+	 * @param tier the tier, 0 for the highest quality
+	 * @param reason the reason of the change, to be logged
+	 */
+	/* package */ synchronized void setTier(final int tier, final String reason) {
+		Log.i(TAG, "Quality tier " + mTier + " -> " + tier + " (render scale " + RENDER_SCALES[tier] + ", ambient animations "
+				+ (AMBIENT_ANIMATIONS[tier] ? "on" : "off") + ", frame interval " + FRAME_INTERVALS[tier] + "): " + reason);
+		mTier = tier;
+		mFrameCount = 0;
+		mCalmWindowCount = 0;
+
+		final DigitalBirdGameLogic logic = mGameLogic;
+		logic.postRenderScale(RENDER_SCALES[tier]);
+		logic.setAmbientAnimationsEnabled(AMBIENT_ANIMATIONS[tier]);
+		logic.setFrameInterval(FRAME_INTERVALS[tier]);
+	}
+
+	/**
+	 * Records the busy time of a drawn frame. This must be called from the renderer thread.
+	 * @param busyTime the time the frame took to calculate, draw and post, excluding waiting for the canvas, in nanoseconds
+	 * @param vsyncPeriod the duration of a single display refresh in nanoseconds
+	 */
+	/* package */ synchronized void recordFrame(final long busyTime, final long vsyncPeriod) {
+		final long[] frameTimes = mFrameTimes;
+		frameTimes[mFrameCount++] = busyTime;
+		if (mFrameCount < WINDOW_SIZE)
+			return;
+		mFrameCount = 0;
+
+		// The window is complete, the times may be sorted in place
+		Arrays.sort(frameTimes);
+		final long p90 = frameTimes[WINDOW_SIZE * 9 / 10];
+		final int tier = mTier;
+
+		final long budget = vsyncPeriod * FRAME_INTERVALS[tier];
+		if (p90 > budget * LOWER_THRESHOLD) {
+			if (tier < TIER_COUNT - 1)
+				setTier(tier + 1, "p90 frame time " + p90 / 1000 + " us exceeds " + (int) (LOWER_THRESHOLD * 100) + "% of the " + budget / 1000 + " us budget");
+			mCalmWindowCount = 0;
+			return;
+		}
+
+		if (tier > 0) {
+			// The higher tier may draw more pixels, its frames would take longer
+			final float scaleRatio = RENDER_SCALES[tier - 1] / RENDER_SCALES[tier];
+			final long predictedP90 = (long) (p90 * scaleRatio * scaleRatio);
+			final long higherBudget = vsyncPeriod * FRAME_INTERVALS[tier - 1];
+			if (predictedP90 < higherBudget * RAISE_THRESHOLD) {
+				if (++mCalmWindowCount >= RAISE_WINDOW_COUNT)
+					setTier(tier - 1, "predicted p90 frame time below " + (int) (RAISE_THRESHOLD * 100) + "% of the " + higherBudget / 1000
+							+ " us budget for " + RAISE_WINDOW_COUNT * WINDOW_SIZE + " frames, last " + predictedP90 / 1000 + " us");
+			} else {
+				mCalmWindowCount = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import no.nordicsemi.android.digitalbird.game.stats.FrameProfiler;
+
+/**
+ * The fixed time step simulation of a game.
+ * <p>
+ * The simulation runs with a fixed time step ({@link #SIMULATION_STEP}), independently from the frame rate. The time elapsed since the last frame
+ * is accumulated and consumed in fixed steps. The remainder, that is smaller than a step, is used to interpolate objects between the last two
+ * simulation states when drawing. This way the game plays the same way no matter how often the frames are drawn.</p>
+ * <p>
+ * Frames must be calculated by a single thread at a time: the renderer thread, or the {@link SimulationThread} when frames are pipelined.</p>
+ */
+/* package */ class Simulation {
+	/** The simulation time step in milliseconds. All objects are moved by this time in each {@link GameLogic#calculateFrame(long, GameState)} call. */
+	/* package */ static final long SIMULATION_STEP = 16; // [ms]
+	/** The simulation step in nanoseconds. */
+	private static final long SIMULATION_STEP_NANOS = SIMULATION_STEP * 1000000L;
+	/**
+	 * The maximum time that will be simulated in a single frame. If a frame took longer (GC pause, the app was in background) the game will simply
+	 * slow down for this frame instead of trying to catch up, which would make the next frame even longer (spiral of death).
+	 */
+	private static final long MAX_FRAME_TIME_NANOS = 100 * 1000000L; // [ns]
+
+	private final GameLogic mGameLogic;
+	private final FrameProfiler mFrameProfiler;
+	/** The timestamp of the last frame in nanoseconds. */
+	private long mLastTimestamp;
+	/** The simulation time that has not been consumed yet, in nanoseconds. Always smaller than {@link #SIMULATION_STEP_NANOS} after a frame. */
+	private long mAccumulator;
+	/** Flag set when the time since the last frame should not be simulated, e.g. after the renderer was parked. */
+	private volatile boolean mClockReset;
+
+	/* package */ Simulation(final GameLogic logic) {
+		mGameLogic = logic;
+		mFrameProfiler = logic.getFrameProfiler();
+	}
+
+	/**
+	 * Initializes the clock.
+	 * @param timestamp the current time in nanoseconds
+	 */
+	/* package */ void start(final long timestamp) {
+		mLastTimestamp = timestamp;
+		mAccumulator = 0L;
+	}
+
+	/**
+	 * Makes the next frame start the simulation from its own timestamp, so that the time elapsed since the last frame is not simulated.
+	 * This may be called from any thread.
+	 */
+	/* package */ void resetClock() {
+		mClockReset = true;
+	}
+
+	/**
+	 * Advances the simulation to the given time using fixed steps and publishes the frame.
+	 * @param timestamp the time the frame will be displayed at, in nanoseconds
+	 */
+	/* package */ void calculateFrame(final long timestamp) {
+		final long calculationTime = System.nanoTime();
+		long frameTime = timestamp - mLastTimestamp;
+		if (mClockReset || frameTime < 0) {
+			mClockReset = false;
+			frameTime = 0;
+		}
+		if (frameTime > MAX_FRAME_TIME_NANOS)
+			frameTime = MAX_FRAME_TIME_NANOS;
+		mLastTimestamp = timestamp;
+
+		mAccumulator += frameTime;
+		if (mAccumulator >= SIMULATION_STEP_NANOS) {
+			while (mAccumulator >= SIMULATION_STEP_NANOS) {
+				// The state is obtained each step as it may be changed by the game logic, e.g. when the bird hits a pipe
+				mGameLogic.calculateFrame(SIMULATION_STEP, mGameLogic.getGameState());
+				mAccumulator -= SIMULATION_STEP_NANOS;
+			}
+			mFrameProfiler.recordPhase(FrameProfiler.PHASE_CALCULATE_FRAME, System.nanoTime() - calculationTime);
+		}
+		mGameLogic.publishFrame(calculationTime, (float) mAccumulator / SIMULATION_STEP_NANOS);
+	}
+}
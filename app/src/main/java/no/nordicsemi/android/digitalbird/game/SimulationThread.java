@@ -0,0 +1,125 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.util.Log;
+
+/**
+ * The thread that calculates frames when the simulation and drawing are pipelined. While the renderer thread draws frame N, this thread
+ * calculates frame N+1, so the frame time is the longer of the two instead of their sum. The price is one more frame of latency.
+ * <p>
+ * The renderer requests frames by their timestamps. Only the most recent request is kept, so the requests never queue up. Calculated frames
+ * are handed back through the triple buffer of the {@link GameLogic}. Neither the requests nor the frames allocate any objects.</p>
+ */
+/* package */ class SimulationThread extends Thread {
+	private static final String TAG = "SimulationThread";
+
+	private final Simulation mSimulation;
+	private final Object mLock = new Object();
+	/** The timestamp of the requested frame. */
+	private long mRequestedTimestamp;
+	/** Flag set when a frame has been requested and the calculation has not started yet. */
+	private boolean mFrameRequested;
+	/** Flag set while a frame is being calculated. */
+	private boolean mCalculating;
+	private boolean mStopped;
+
+	/* package */ SimulationThread(final Simulation simulation) {
+		super(TAG);
+		mSimulation = simulation;
+	}
+
+	/**
+	 * Requests the frame for the given timestamp to be calculated. If the previous request has not been handled yet, it is replaced.
+	 * @param timestamp the time the frame will be displayed at, in nanoseconds
+	 */
+	/* package */ void requestFrame(final long timestamp) {
+		synchronized (mLock) {
+			mRequestedTimestamp = timestamp;
+			mFrameRequested = true;
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until the requested frame, if any, has been calculated. Afterwards the caller may calculate frames itself, until it requests
+	 * the next frame from this thread.
+	 */
+	/* package */ void awaitIdle() {
+		synchronized (mLock) {
+			while ((mFrameRequested || mCalculating) && !mStopped) {
+				try {
+					mLock.wait();
+				} catch (final InterruptedException e) {
+					Log.w(TAG, "Simulation thread interrupted", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the thread and waits until it finishes.
+	 */
+	/* package */ void killThread() {
+		synchronized (mLock) {
+			mStopped = true;
+			mLock.notifyAll();
+		}
+
+		boolean retry = true;
+		while (retry) {
+			try {
+				join();
+				retry = false;
+			} catch (final InterruptedException e) {
+				Log.w(TAG, "Stopping the simulation interrupted", e);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			final long timestamp;
+			synchronized (mLock) {
+				while (!mFrameRequested && !mStopped) {
+					try {
+						mLock.wait();
+					} catch (final InterruptedException e) {
+						Log.w(TAG, "Simulation thread interrupted", e);
+					}
+				}
+				if (mStopped)
+					return;
+				timestamp = mRequestedTimestamp;
+				mFrameRequested = false;
+				mCalculating = true;
+			}
+			mSimulation.calculateFrame(timestamp);
+			synchronized (mLock) {
+				mCalculating = false;
+				mLock.notifyAll();
+			}
+		}
+	}
+}
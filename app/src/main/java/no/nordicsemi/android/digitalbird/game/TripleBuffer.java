@@ -0,0 +1,94 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer handing over objects from a single producer to a single consumer thread.
+ * <p>
+ * The producer fills the back buffer and publishes it, the consumer acquires the most recently published buffer as the front buffer.
+ * The third buffer is kept in the middle, between the two, so neither thread ever waits for the other. Buffers are preallocated and reused,
+ * a buffer is not modified while the consumer holds it.</p>
+ * @param <T> the buffer type
+ */
+public class TripleBuffer<T> {
+	/** The mask of the buffer index in {@link #mMiddle}. */
+	private static final int INDEX_MASK = 0x3;
+	/** The flag set in {@link #mMiddle} when the middle buffer has been published and not acquired yet. */
+	private static final int FLAG_NEW = 0x4;
+
+	private final Object[] mBuffers;
+	/** The index of the middle buffer, possibly with the {@link #FLAG_NEW} flag. */
+	private final AtomicInteger mMiddle;
+	/** The index of the buffer owned by the producer. */
+	private int mBack;
+	/** The index of the buffer owned by the consumer. */
+	private int mFront;
+
+	/**
+	 * Creates the triple buffer from 3 preallocated buffers. The first one is the initial front buffer.
+	 */
+	public TripleBuffer(final T front, final T middle, final T back) {
+		mBuffers = new Object[] { front, middle, back };
+		mFront = 0;
+		mMiddle = new AtomicInteger(1);
+		mBack = 2;
+	}
+
+	/**
+	 * Returns the buffer the producer may write to. This must be called from the producer thread only.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack() {
+		return (T) mBuffers[mBack];
+	}
+
+	/**
+	 * Publishes the back buffer. A new back buffer is obtained. It contains old data and must be overwritten completely.
+	 * This must be called from the producer thread only.
+	 */
+	public void publish() {
+		mBack = mMiddle.getAndSet(mBack | FLAG_NEW) & INDEX_MASK;
+	}
+
+	/**
+	 * Makes the most recently published buffer the front buffer. If nothing has been published since the last call,
+	 * the front buffer does not change. This must be called from the consumer thread only.
+	 * @return true if a new buffer has been acquired
+	 */
+	public boolean acquire() {
+		if ((mMiddle.get() & FLAG_NEW) == 0)
+			return false;
+		mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+		return true;
+	}
+
+	/**
+	 * Returns the front buffer. This must be called from the consumer thread only.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront() {
+		return (T) mBuffers[mFront];
+	}
+}
@@ -0,0 +1,149 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * The renderer thread that draws frames in sync with the display refresh. Instead of drawing frames as fast as the canvas can be locked,
+ * the thread runs its own {@link Looper} and draws one frame per {@link Choreographer} frame callback. The vsync timestamp is used as the
+ * simulation clock. When the scene is static, no frame callback is posted until a new frame is requested. When the frame rate is limited,
+ * the frame callbacks in between frames are skipped.
+ */
+public class VsyncRendererThread extends GameRendererThread implements Choreographer.FrameCallback {
+	/** The lock used to publish the looper and its handler to other threads. */
+	private final Object mLock = new Object();
+	private Looper mLooper;
+	private Handler mHandler;
+	private Choreographer mChoreographer;
+	/** Flag set when no frame callback is posted because the scene is static. */
+	private boolean mParked;
+	/** Number of frame callbacks to skip before the next frame, when the frame rate is limited. */
+	private int mSkippedVsyncs;
+
+	/**
+	 * A task executed on the renderer thread when a new frame has been requested. It schedules the frame callback for the next vsync,
+	 * also if the thread was waiting for the next ambient frame.
+	 */
+	private final Runnable mWakeUpTask = new Runnable() {
+		@Override
+		public void run() {
+			if (isStopped())
+				return;
+
+			if (mParked) {
+				// The time and vsync pulses since the last frame should not be taken into account
+				mParked = false;
+				resetClock();
+			}
+			mSkippedVsyncs = 0;
+			mChoreographer.removeFrameCallback(VsyncRendererThread.this);
+			mChoreographer.postFrameCallback(VsyncRendererThread.this);
+		}
+	};
+
+	/**
+	 * Creates the thread.
+	 * @param logic the game logic
+	 * @param refreshRate the display refresh rate in frames per second
+	 * @param pipelined true to calculate frames on a separate thread, one frame ahead
+	 */
+	public VsyncRendererThread(final GameLogic logic, final float refreshRate, final boolean pipelined) {
+		super(logic, refreshRate, pipelined);
+	}
+
+	@Override
+	public void killThread() {
+		super.killThread();
+
+		// Quitting the looper makes the run() method return. If the looper hasn't been prepared yet the thread will notice the flag itself.
+		synchronized (mLock) {
+			if (mLooper != null)
+				mLooper.quit();
+		}
+	}
+
+	@Override
+	public void requestRender() {
+		synchronized (mLock) {
+			if (mHandler != null)
+				mHandler.post(mWakeUpTask);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			Looper.prepare();
+			synchronized (mLock) {
+				mLooper = Looper.myLooper();
+				mHandler = new Handler(mLooper);
+			}
+			if (isStopped())
+				return;
+
+			// The Choreographer is bound to the looper of the current thread
+			mChoreographer = Choreographer.getInstance();
+			mChoreographer.postFrameCallback(this);
+			Looper.loop();
+		} finally {
+			stopSimulation();
+		}
+	}
+
+	@Override
+	public void doFrame(final long frameTimeNanos) {
+		if (isStopped())
+			return;
+
+		if (mSkippedVsyncs > 0) {
+			mSkippedVsyncs--;
+			mChoreographer.postFrameCallback(this);
+			return;
+		}
+
+		// If the surface is not ready, we will simply try again on the next vsync
+		if (!renderFrame(frameTimeNanos)) {
+			mChoreographer.postFrameCallback(this);
+			return;
+		}
+
+		switch (getRenderMode()) {
+			case CONTINUOUS:
+				mSkippedVsyncs = getFrameInterval() - 1;
+				mChoreographer.postFrameCallback(this);
+				break;
+			case AMBIENT:
+				// Skipping vsync pulses on purpose, they should not be counted as dropped frames
+				skipFrameInterval();
+				mChoreographer.postFrameCallbackDelayed(this, AMBIENT_FRAME_INTERVAL - getVsyncPeriod() / 1000000L);
+				break;
+			case IDLE:
+				// Nothing will be drawn until a new frame is requested
+				mParked = true;
+				break;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.entity;
+
+import android.graphics.Rect;
+
+/**
+ * Checks collisions of a box, e.g. the bird, with solid entities.
+ */
+public class CollisionSystem {
+	/**
+	 * Returns the first solid entity that the given box intersects. Entities with {@link EntityStore#FLAG_SOLID} collide with their box,
+	 * those with {@link EntityStore#FLAG_COLUMN} with everything in their column except the box.
+	 * @param store the entities
+	 * @param box the box to check
+	 * @return the index of the entity, or -1 if there is no collision
+	 */
+	public int findCollision(final EntityStore store, final Rect box) {
+		final int[] flags = store.flags;
+		final float[] positionX = store.positionX;
+		final float[] positionY = store.positionY;
+		final int[] width = store.width;
+		final int[] height = store.height;
+		final int count = store.count;
+
+		for (int i = 0; i < count; ++i) {
+			final int f = flags[i];
+			if ((f & (EntityStore.FLAG_SOLID | EntityStore.FLAG_COLUMN)) == 0)
+				continue;
+
+			final float x = positionX[i];
+			if (box.left >= x + width[i] || box.right <= x)
+				continue;
+
+			final float y = positionY[i];
+			final boolean inside = box.top < y + height[i] && box.bottom > y;
+			final boolean inGap = box.top >= y && box.bottom <= y + height[i];
+			if ((f & EntityStore.FLAG_SOLID) != 0 ? inside : !inGap)
+				return i;
+		}
+		return -1;
+	}
+}
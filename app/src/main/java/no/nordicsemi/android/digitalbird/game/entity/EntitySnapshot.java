@@ -0,0 +1,103 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.entity;
+
+/**
+ * The state of all entities needed to draw them, copied from the {@link EntityStore} after a simulation step. The attributes are kept
+ * in the same layout as in the store, so writing a snapshot is just copying arrays. Arrays are reused and allocated only when the store grew.
+ */
+public class EntitySnapshot {
+	private int[] mKind = new int[0];
+	private int[] mFlags = new int[0];
+	private float[] mPositionX = new float[0];
+	private float[] mPositionY = new float[0];
+	private float[] mPreviousPositionX = new float[0];
+	private float[] mPreviousPositionY = new float[0];
+	private int[] mWidth = new int[0];
+	private int[] mHeight = new int[0];
+	private int mCount;
+
+	/* package */ void write(final EntityStore store) {
+		final int count = store.count;
+		if (mKind.length < store.getCapacity()) {
+			final int capacity = store.getCapacity();
+			mKind = new int[capacity];
+			mFlags = new int[capacity];
+			mPositionX = new float[capacity];
+			mPositionY = new float[capacity];
+			mPreviousPositionX = new float[capacity];
+			mPreviousPositionY = new float[capacity];
+			mWidth = new int[capacity];
+			mHeight = new int[capacity];
+		}
+		System.arraycopy(store.kind, 0, mKind, 0, count);
+		System.arraycopy(store.flags, 0, mFlags, 0, count);
+		System.arraycopy(store.positionX, 0, mPositionX, 0, count);
+		System.arraycopy(store.positionY, 0, mPositionY, 0, count);
+		System.arraycopy(store.previousPositionX, 0, mPreviousPositionX, 0, count);
+		System.arraycopy(store.previousPositionY, 0, mPreviousPositionY, 0, count);
+		System.arraycopy(store.width, 0, mWidth, 0, count);
+		System.arraycopy(store.height, 0, mHeight, 0, count);
+		mCount = count;
+	}
+
+	/**
+	 * Returns the number of entities.
+	 */
+	public int size() {
+		return mCount;
+	}
+
+	public int getKind(final int index) {
+		return mKind[index];
+	}
+
+	public int getFlags(final int index) {
+		return mFlags[index];
+	}
+
+	public float getPositionX(final int index) {
+		return mPositionX[index];
+	}
+
+	public float getPositionY(final int index) {
+		return mPositionY[index];
+	}
+
+	public float getPreviousPositionX(final int index) {
+		return mPreviousPositionX[index];
+	}
+
+	public float getPreviousPositionY(final int index) {
+		return mPreviousPositionY[index];
+	}
+
+	public int getWidth(final int index) {
+		return mWidth[index];
+	}
+
+	public int getHeight(final int index) {
+		return mHeight[index];
+	}
+}
@@ -0,0 +1,199 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.entity;
+
+/**
+ * The store of entities: obstacles, particles and other objects that come in numbers. Instead of an object per entity, the state of all
+ * entities is kept in primitive arrays, one array per attribute, and updated by the systems ({@link MovementSystem},
+ * {@link CollisionSystem}, {@link ScoringSystem}) in tight loops. An entity is just an index into the arrays.
+ * <p>
+ * Adding and releasing an entity are O(1): a new entity is added at the end and a released one is replaced by the last entity. The order
+ * of entities is therefore not kept and an index is valid only until the next simulation step.</p>
+ * <p>
+ * The store does not grow by itself, an entity is dropped when it's full. Use {@link #ensureCapacity(int)} to make room in advance,
+ * so that nothing is allocated while the game is played. The store must be used by a single thread, the simulation.</p>
+ */
+public class EntityStore {
+	/** The entity is solid. The bird collides with its box. */
+	public static final int FLAG_SOLID = 0x01;
+	/** The entity is a solid column of the whole world height with a gap. The box of the entity is the gap. */
+	public static final int FLAG_COLUMN = 0x02;
+	/** Passing the entity scores a point. */
+	public static final int FLAG_SCORABLE = 0x04;
+	/** The entity has already been passed. */
+	public static final int FLAG_PASSED = 0x08;
+
+	// The attributes of entities. Used directly by the systems.
+	/* package */ int[] kind;
+	/* package */ int[] flags;
+	/* package */ float[] positionX;
+	/* package */ float[] positionY;
+	/* package */ float[] previousPositionX;
+	/* package */ float[] previousPositionY;
+	/** The horizontal velocity in pixels per scaled millisecond. */
+	/* package */ float[] velocityX;
+	/** The vertical velocity in pixels per scaled millisecond. */
+	/* package */ float[] velocityY;
+	/* package */ int[] width;
+	/* package */ int[] height;
+	/** Number of entities. */
+	/* package */ int count;
+	/** Number of entities that could not be added because the store was full. */
+	private int mDroppedCount;
+
+	/**
+	 * Creates the store.
+	 * @param capacity the initial capacity
+	 */
+	public EntityStore(final int capacity) {
+		allocate(capacity);
+	}
+
+	/**
+	 * Returns the maximum number of entities that may be added without calling {@link #ensureCapacity(int)}.
+	 */
+	public int getCapacity() {
+		return kind.length;
+	}
+
+	/**
+	 * Returns the number of entities.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of entities that could not be added because the store was full.
+	 */
+	public int getDroppedCount() {
+		return mDroppedCount;
+	}
+
+	/**
+	 * Makes sure that the given number of entities may be stored. Existing entities are kept. This allocates arrays only when the capacity grows.
+	 * @param capacity the required capacity
+	 */
+	public void ensureCapacity(final int capacity) {
+		if (capacity > kind.length)
+			allocate(capacity);
+	}
+
+	/**
+	 * Adds an entity that is not moving.
+	 * @param kind the kind of the entity, used to select the renderer
+	 * @param flags the flags, a combination of the FLAG_ constants
+	 * @param x the X position of the entity's box
+	 * @param y the Y position of the entity's box
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 * @return the index of the new entity, or -1 if the store is full. The entity is then counted as dropped.
+	 */
+	public int add(final int kind, final int flags, final float x, final float y, final int width, final int height) {
+		if (count == this.kind.length) {
+			mDroppedCount++;
+			return -1;
+		}
+
+		final int index = count++;
+		this.kind[index] = kind;
+		this.flags[index] = flags;
+		previousPositionX[index] = positionX[index] = x;
+		previousPositionY[index] = positionY[index] = y;
+		velocityX[index] = velocityY[index] = 0.0f;
+		this.width[index] = width;
+		this.height[index] = height;
+		return index;
+	}
+
+	/**
+	 * Sets the velocity of the entity.
+	 * @param index the index of the entity
+	 * @param velocityX the horizontal velocity in pixels per scaled millisecond
+	 * @param velocityY the vertical velocity in pixels per scaled millisecond
+	 */
+	public void setVelocity(final int index, final float velocityX, final float velocityY) {
+		this.velocityX[index] = velocityX;
+		this.velocityY[index] = velocityY;
+	}
+
+	/**
+	 * Releases all entities.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Copies the attributes needed to draw the entities into the snapshot.
+	 * @param snapshot the snapshot to write to
+	 */
+	public void writeSnapshot(final EntitySnapshot snapshot) {
+		snapshot.write(this);
+	}
+
+	/**
+	 * Copies the entity to another index. Used to replace a released entity with the last one.
+	 */
+	/* package */ void move(final int from, final int to) {
+		kind[to] = kind[from];
+		flags[to] = flags[from];
+		positionX[to] = positionX[from];
+		positionY[to] = positionY[from];
+		previousPositionX[to] = previousPositionX[from];
+		previousPositionY[to] = previousPositionY[from];
+		velocityX[to] = velocityX[from];
+		velocityY[to] = velocityY[from];
+		width[to] = width[from];
+		height[to] = height[from];
+	}
+
+	private void allocate(final int capacity) {
+		final int count = this.count;
+		kind = copyOf(kind, capacity, count);
+		flags = copyOf(flags, capacity, count);
+		positionX = copyOf(positionX, capacity, count);
+		positionY = copyOf(positionY, capacity, count);
+		previousPositionX = copyOf(previousPositionX, capacity, count);
+		previousPositionY = copyOf(previousPositionY, capacity, count);
+		velocityX = copyOf(velocityX, capacity, count);
+		velocityY = copyOf(velocityY, capacity, count);
+		width = copyOf(width, capacity, count);
+		height = copyOf(height, capacity, count);
+	}
+
+	private static int[] copyOf(final int[] array, final int capacity, final int count) {
+		final int[] newArray = new int[capacity];
+		if (array != null)
+			System.arraycopy(array, 0, newArray, 0, count);
+		return newArray;
+	}
+
+	private static float[] copyOf(final float[] array, final int capacity, final int count) {
+		final float[] newArray = new float[capacity];
+		if (array != null)
+			System.arraycopy(array, 0, newArray, 0, count);
+		return newArray;
+	}
+}
@@ -0,0 +1,89 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.entity;
+
+/**
+ * Moves entities by their velocities and releases those that have left the world.
+ */
+public class MovementSystem {
+	private int mWorldWidth;
+	private int mWorldHeight;
+
+	/**
+	 * Sets the size of the world. Entities moving out of it are released.
+	 * @param width the screen width
+	 * @param height the height of the world above the ground
+	 */
+	public void setWorldSize(final int width, final int height) {
+		mWorldWidth = width;
+		mWorldHeight = height;
+	}
+
+	/**
+	 * Remembers the current positions of all entities as the previous ones, so that they may be drawn in between the last two states.
+	 * @param store the entities
+	 */
+	public void saveState(final EntityStore store) {
+		final int count = store.count;
+		System.arraycopy(store.positionX, 0, store.previousPositionX, 0, count);
+		System.arraycopy(store.positionY, 0, store.previousPositionY, 0, count);
+	}
+
+	/**
+	 * Moves all entities. Entities that have left the world in the direction they are moving are released, each replaced by the last entity,
+	 * which is then moved in its place.
+	 * @param store the entities
+	 * @param scaledDeltaTime the scaled time since the last step
+	 */
+	public void move(final EntityStore store, final float scaledDeltaTime) {
+		final float[] positionX = store.positionX;
+		final float[] positionY = store.positionY;
+		final float[] velocityX = store.velocityX;
+		final float[] velocityY = store.velocityY;
+		final int[] width = store.width;
+		final int[] height = store.height;
+		final int worldWidth = mWorldWidth;
+		final int worldHeight = mWorldHeight;
+		int count = store.count;
+
+		int i = 0;
+		while (i < count) {
+			final float vx = velocityX[i];
+			final float vy = velocityY[i];
+			final float x = positionX[i] += vx * scaledDeltaTime;
+			final float y = positionY[i] += vy * scaledDeltaTime;
+
+			final boolean left = (vx < 0 && x + width[i] < 0) || (vx > 0 && x > worldWidth)
+					|| (vy < 0 && y + height[i] < 0) || (vy > 0 && y > worldHeight);
+			if (left) {
+				// The last entity has not been moved yet in this step
+				if (i != --count)
+					store.move(count, i);
+				continue;
+			}
+			i++;
+		}
+		store.count = count;
+	}
+}
@@ -0,0 +1,52 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.entity;
+
+/**
+ * Counts the scorable entities that have been passed.
+ */
+public class ScoringSystem {
+	/**
+	 * Marks scorable entities whose scoring edge is to the left of the given line as passed.
+	 * @param store the entities
+	 * @param lineX the X position of the line, e.g. the left edge of the bird
+	 * @param scoringWidth the distance from the left edge of an entity to its scoring edge
+	 * @return the number of entities passed in this step
+	 */
+	public int update(final EntityStore store, final float lineX, final int scoringWidth) {
+		final int[] flags = store.flags;
+		final float[] positionX = store.positionX;
+		final int count = store.count;
+
+		int passed = 0;
+		for (int i = 0; i < count; ++i) {
+			final int f = flags[i];
+			if ((f & (EntityStore.FLAG_SCORABLE | EntityStore.FLAG_PASSED)) == EntityStore.FLAG_SCORABLE && lineX > positionX[i] + scoringWidth) {
+				flags[i] = f | EntityStore.FLAG_PASSED;
+				passed++;
+			}
+		}
+		return passed;
+	}
+}
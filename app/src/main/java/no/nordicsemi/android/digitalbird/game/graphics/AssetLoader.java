@@ -0,0 +1,115 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads game assets on a pool of worker threads, one per CPU core. Tasks waiting for a free worker are executed in the order of their priority,
+ * and in the order they were added within the same priority.
+ * <p>
+ * Tasks are executed on the worker threads. They should decode bitmaps using the {@link SpriteRegistry}, create game objects and publish
+ * them in a thread safe manner.</p>
+ */
+public class AssetLoader {
+	/** Assets required to draw the first frame. */
+	public static final int PRIORITY_ESSENTIAL = 0;
+	/** Assets required to play the game. */
+	public static final int PRIORITY_GAMEPLAY = 1;
+	/** Ambient animations. */
+	public static final int PRIORITY_AMBIENT = 2;
+
+	/** There are only a few assets, more threads would not help. */
+	private static final int MAX_THREADS = 4;
+	/** Worker threads are finished when idle for this time. */
+	private static final long KEEP_ALIVE_TIME = 1000; // [ms]
+
+	private final ThreadPoolExecutor mExecutor;
+	private int mSequence;
+
+	public AssetLoader() {
+		final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+		mExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private int mCount;
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return new Thread(runnable, "AssetLoader-" + (++mCount));
+			}
+		});
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Adds a loading task. Tasks are started in the order of their priority when a worker becomes available.
+	 * @param priority one of the PRIORITY_* constants, lower value means higher priority
+	 * @param task the task to be executed on a worker thread
+	 */
+	public void load(final int priority, final Runnable task) {
+		mExecutor.execute(new Task(priority, mSequence++, task));
+	}
+
+	/**
+	 * Finishes the worker threads when all added tasks are done. New tasks may not be added afterwards.
+	 */
+	public void shutdown() {
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * Waits until all tasks are done after {@link #shutdown()} has been called.
+	 * @param timeout the maximum time to wait in milliseconds
+	 * @return true if all tasks are done, false if the timeout elapsed before
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	public boolean awaitTermination(final long timeout) throws InterruptedException {
+		return mExecutor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	private static class Task implements Runnable, Comparable<Task> {
+		private final int mPriority;
+		private final int mSequence;
+		private final Runnable mTask;
+
+		private Task(final int priority, final int sequence, final Runnable task) {
+			mPriority = priority;
+			mSequence = sequence;
+			mTask = task;
+		}
+
+		@Override
+		public void run() {
+			mTask.run();
+		}
+
+		@Override
+		public int compareTo(final Task another) {
+			if (mPriority != another.mPriority)
+				return mPriority < another.mPriority ? -1 : 1;
+			return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+		}
+	}
+}
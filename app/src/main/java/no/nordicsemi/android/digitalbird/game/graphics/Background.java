@@ -24,58 +24,71 @@ package no.nordicsemi.android.digitalbird.game.graphics;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.Shader;
+import android.graphics.Rect;
 import android.util.TypedValue;
 
 import no.nordicsemi.android.digitalbird.R;
 
-public class Background implements GameObject {
-	private final static float GRASS_SPEED = -1; // negative as pipes move to the left
+/**
+ * The background of the game. The sky and the ground do not move, so they are composited into a single bitmap whenever the screen dimensions
+ * change, and drawn with a single call. The clouds, the city and the grass are {@link ParallaxLayer}s: the grass scrolls with the pipes,
+ * the city and the clouds, further away, slower. Each of them is drawn with a single bitmap copy.
+ */
+public class Background implements GameObject<Background.Snapshot> {
+	// The speeds of the layers relative to the pipes. All layers move to the left.
+	private final static float CLOUDS_SPEED = 0.1f;
+	private final static float CITY_SPEED = 0.25f;
+	private final static float GRASS_SPEED = 1.0f;
+
+	// Indices of the scrolling layers, from the furthest one
+	private final static int LAYER_CLOUDS = 0;
+	private final static int LAYER_CITY = 1;
+	private final static int LAYER_GRASS = 2;
+	private final static int LAYER_COUNT = 3;
+
+	/** The state of the background needed to draw it. */
+	public static class Snapshot {
+		/** The offsets of the layers, each in range [0, tile width). */
+		private final float[] offsets = new float[LAYER_COUNT];
+		/** The translations of the layers made in the last simulation step. */
+		private final float[] lastTranslations = new float[LAYER_COUNT];
+	}
 
 	private final Paint mBackgroundPaint;
-	private final Paint mCloudsPaint;
-	private final Paint mCityPaint;
-	private final Paint mGrassPaint;
 	private final Paint mGroundPaint;
+	/** The scrolling layers, in the drawing order. */
+	private final ParallaxLayer[] mLayers = new ParallaxLayer[LAYER_COUNT];
 	private final int mCloudsHeight;
 	private final int mCityWidth;
 	private final int mCityHeight;
-	private final int mGrassWidth;
 	private final int mGrassHeight;
 	private final int mGrassMargin;
 	private int mCloudsPositionY;
-	private Matrix mGrassMatrix;
+	/** The static layers (sky and ground) pre-rendered for the current screen dimensions. */
+	private Bitmap mStaticLayer;
 
 	private int mWidth;
 	private int mHeight;
-	private float mTotalOffset;
+	/** The layer translations made since the last saved state. Used to interpolate the layer positions. */
+	private final float[] mLastTranslations = new float[LAYER_COUNT];
 
-	public Background(Resources resources) {
-		Bitmap clouds = BitmapFactory.decodeResource(resources, R.drawable.background_clouds);
-		BitmapShader cloudsShader = new BitmapShader(clouds, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+	public Background(final SpriteRegistry sprites) {
+		final Resources resources = sprites.getResources();
+		final Bitmap clouds = sprites.getBitmap("background_clouds");
 		mCloudsHeight = clouds.getHeight();
-		mCloudsPaint = new Paint();
-		mCloudsPaint.setShader(cloudsShader);
+		mLayers[LAYER_CLOUDS] = new ParallaxLayer(clouds, CLOUDS_SPEED);
 
-		Bitmap city = BitmapFactory.decodeResource(resources, R.drawable.background_city);
-		BitmapShader cityShader = new BitmapShader(city, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+		final Bitmap city = sprites.getBitmap("background_city");
 		mCityWidth = city.getWidth();
 		mCityHeight = city.getHeight();
-		mCityPaint = new Paint();
-		mCityPaint.setShader(cityShader);
+		mLayers[LAYER_CITY] = new ParallaxLayer(city, CITY_SPEED);
 
-		Bitmap grass = BitmapFactory.decodeResource(resources, R.drawable.background_grass);
-		BitmapShader grassShader = new BitmapShader(grass, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mGrassWidth = grass.getWidth();
+		final Bitmap grass = sprites.getBitmap("background_grass");
 		mGrassHeight = grass.getHeight();
 		mGrassMargin = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1, resources.getDisplayMetrics());
-		mGrassPaint = new Paint();
-		mGrassPaint.setShader(grassShader);
+		mLayers[LAYER_GRASS] = new ParallaxLayer(grass, GRASS_SPEED);
 
 		mBackgroundPaint = new Paint();
 		mBackgroundPaint.setColor(resources.getColor(R.color.background));
@@ -90,58 +103,100 @@ public class Background implements GameObject {
 		mHeight = height;
 		mCloudsPositionY = height * 3/4;
 
-		// Create a local matrix for the paint that will draw clouds.
-		Matrix matrix = new Matrix();
-		matrix.postTranslate(0, mCloudsPositionY);
-		mCloudsPaint.getShader().setLocalMatrix(matrix);
+		final int cityPositionY = mCloudsPositionY + mCloudsHeight;
+		mLayers[LAYER_CLOUDS].setScreenDimensions(width, mCloudsPositionY);
+		mLayers[LAYER_CITY].setScreenDimensions(width, cityPositionY);
+		mLayers[LAYER_GRASS].setScreenDimensions(width, cityPositionY + mCityHeight);
 
-		// Create a local matrix for the paint that will draw the city.
-		matrix = new Matrix();
-		matrix.postTranslate( - mCityWidth + width, mCloudsPositionY + mCloudsHeight); // we want the background to be right adjusted
-		mCityPaint.getShader().setLocalMatrix(matrix);
+		// The static layers depend only on the screen dimensions
+		final Bitmap staticLayer = mStaticLayer;
+		if (staticLayer == null) {
+			// Initially we want the city to be right adjusted
+			mLayers[LAYER_CITY].setOffset(mCityWidth - width);
+		}
+		if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height)
+			mStaticLayer = createStaticLayer(width, height);
+	}
+
+	/**
+	 * Composites the layers that do not move into a single bitmap. The old bitmap is not recycled, as it may be being drawn on the renderer thread.
+	 * @param width the screen width
+	 * @param height the screen height
+	 * @return the bitmap with the sky and ground
+	 */
+	private Bitmap createStaticLayer(final int width, final int height) {
+		final int groundPositionY = mCloudsPositionY + mCloudsHeight + mCityHeight + mGrassHeight;
+
+		final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		canvas.drawPaint(mBackgroundPaint);
+		canvas.drawRect(0, groundPositionY, width, height, mGroundPaint);
+		return bitmap;
+	}
 
-		// Create a local matrix for the paint that will draw the moving grass.
-		matrix = mGrassMatrix = new Matrix();
-		matrix.postTranslate(0, mCloudsPositionY + mCloudsHeight + mCityHeight);
-		mGrassPaint.getShader().setLocalMatrix(matrix);
+	/**
+	 * Recycles the bitmaps created for the screen dimensions. Use it only for a background that is not drawn by the renderer thread,
+	 * as it must not be drawn afterwards.
+	 */
+	public void recycle() {
+		final Bitmap staticLayer = mStaticLayer;
+		mStaticLayer = null;
+		if (staticLayer != null)
+			staticLayer.recycle();
+		for (final ParallaxLayer layer : mLayers)
+			layer.recycle();
 	}
 
 	public int getGroundPositionY() {
 		return mCloudsPositionY + mCloudsHeight + mCityHeight - mGrassMargin;
 	}
 
+	@Override
+	public void getBounds(final Snapshot snapshot, final Rect bounds) {
+		bounds.set(0, 0, mWidth, mHeight);
+	}
+
+	/**
+	 * Returns the area of the scrolling layers, from the top of the clouds to the bottom of the grass. This is the only part of the background
+	 * that changes when the background is moving.
+	 * @param bounds the rectangle to be set to the bounds of the scrolling layers
+	 */
+	public void getScrollingBounds(final Rect bounds) {
+		final ParallaxLayer grass = mLayers[LAYER_GRASS];
+		bounds.set(0, mLayers[LAYER_CLOUDS].getPositionY(), mWidth, grass.getPositionY() + grass.getHeight());
+	}
+
+	@Override
+	public void saveState() {
+		final float[] lastTranslations = mLastTranslations;
+		for (int i = 0; i < LAYER_COUNT; ++i)
+			lastTranslations[i] = 0;
+	}
+
 	@Override
 	public void move(float scaledDeltaTime) {
-		float translation = scaledDeltaTime * GRASS_SPEED;
-
-		// Below we are moving the grass matrix by a translation. As the translation is always a number around -8 eventually the transition grows to a Float.MAX_VALUE
-		// and animation stops, therefore from time to time we have to reset the matrix. If the current translation would translate the grass matrix an integer number
-		// of grass widths, we can simply reset the translation by setting the translation to a value equals minus total translation. Then, the translation from a big negative number
-		// will be set to something around 0. This does not happen every time but happens sometimes. Statistically it should happen before the float overflow.
-		mTotalOffset += translation;
-		if (mTotalOffset % mGrassWidth == 0) {
-			translation = -mTotalOffset;
-			mTotalOffset = 0;
-		}
+		// The world scrolls to the right, as the pipes move to the left
+		final float[] lastTranslations = mLastTranslations;
+		for (int i = 0; i < LAYER_COUNT; ++i)
+			lastTranslations[i] += mLayers[i].scroll(scaledDeltaTime);
+	}
 
-		// Move the grass according to the translation
-		mGrassMatrix.postTranslate(translation, 0);
-		mGrassPaint.getShader().setLocalMatrix(mGrassMatrix);
+	@Override
+	public void writeSnapshot(final Snapshot snapshot) {
+		for (int i = 0; i < LAYER_COUNT; ++i) {
+			snapshot.offsets[i] = mLayers[i].getOffset();
+			snapshot.lastTranslations[i] = mLastTranslations[i];
+		}
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
-		int width = mWidth;
-		int cloudsPositionY = mCloudsPositionY;
-		int cloudsHeight = mCloudsHeight;
-		int cityHeight = mCityHeight;
-		int grassHeight = mGrassHeight;
-
-		// Draw background
-		canvas.drawPaint(mBackgroundPaint);
-		canvas.drawRect(0, cloudsPositionY, width, cloudsPositionY + cloudsHeight, mCloudsPaint);
-		canvas.drawRect(0, cloudsPositionY + cloudsHeight, width, cloudsPositionY + cloudsHeight + cityHeight, mCityPaint);
-		canvas.drawRect(0, cloudsPositionY + cloudsHeight + cityHeight, width, cloudsPositionY + cloudsHeight + cityHeight + grassHeight, mGrassPaint);
-		canvas.drawRect(0, cloudsPositionY + cloudsHeight + cityHeight + grassHeight, width, mHeight, mGroundPaint);
+	public void draw(final Canvas canvas, final Snapshot snapshot, final float interpolation) {
+		// Draw the static layers. This also clears the previous frame.
+		canvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+		// The layers are drawn at the interpolated offsets. The offset may be wrapped since the previous state, the layer wraps it again.
+		final ParallaxLayer[] layers = mLayers;
+		for (int i = 0; i < LAYER_COUNT; ++i)
+			layers[i].draw(canvas, snapshot.offsets[i] - snapshot.lastTranslations[i] * (1.0f - interpolation));
 	}
 }
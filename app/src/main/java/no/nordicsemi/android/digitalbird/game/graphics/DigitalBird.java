@@ -24,27 +24,57 @@ package no.nordicsemi.android.digitalbird.game.graphics;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Shader;
+import android.graphics.RectF;
 import android.util.TypedValue;
 
-import no.nordicsemi.android.digitalbird.R;
-
-public class DigitalBird implements GameObject {
+/**
+ * The Digital Bird. The bird is rotated according to its vertical speed. Rotating a bitmap is the slowest drawing operation, therefore
+ * all frames are pre-rendered at angles from {@link #MIN_ANGLE} to {@link #MAX_ANGLE}, every {@link #ANGLE_STEP} degrees, into a rotation
+ * cache. Each frame is then drawn as an unrotated copy of the cached frame closest to the bird's angle.
+ */
+public class DigitalBird implements GameObject<DigitalBird.Snapshot> {
 	private final static float WINGS_SPEED = 50; // The higher number, the slower the wings are moving.
+	/** The minimum angle of the bird, when flying up. */
+	private final static int MIN_ANGLE = -30; // [deg]
+	/** The maximum angle of the bird, when falling down. */
+	private final static int MAX_ANGLE = 90; // [deg]
+	/** The angle between two pre-rendered rotations. */
+	private final static int ANGLE_STEP = 5; // [deg]
+	private final static int ANGLE_COUNT = (MAX_ANGLE - MIN_ANGLE) / ANGLE_STEP + 1;
+
+	/** The state of the bird needed to draw it. */
+	public static class Snapshot {
+		private int positionX;
+		private int positionY;
+		private int previousPositionY;
+		private int frame;
+		private float angle;
+	}
 
-	private final Paint mBirdPaint;
+	private final Sprite mSprite;
 	private final int mBirdBorderWidth;
 	private final int mBirdWidth;
 	private final int mBirdHeight;
-	private Matrix mBirdMatrix;
-	/** A temporary rectangle to calculate collisions. */
-	private final Rect mTestRect = new Rect();
+	/** Draws the bird rotated when the rotation cache is disabled. Used only when drawing. */
+	private final SpriteRenderer mSpriteRenderer = new SpriteRenderer(new Paint(Paint.FILTER_BITMAP_FLAG));
+	/** Copies the cells of the rotation cache, adding them to the shared batch when it's drawing. Used only when drawing. */
+	private final SpriteRenderer mCacheRenderer;
+	/** The batch shared by the objects, flushed before the canvas is rotated. */
+	private final SpriteBatch mSpriteBatch;
+	/** The cell drawn from the rotation cache. Used only when drawing. */
+	private final Rect mCacheSource = new Rect();
+	/**
+	 * All frames of the bird, rotated. Each cell is a square big enough for the frame rotated by any angle, with the pivot in the center.
+	 * Frames are in columns, angles in rows. Null until the screen dimensions are set.
+	 */
+	private Bitmap mRotationCache;
+	/** The size of a cell in the rotation cache. */
+	private int mCellSize;
+	/** Flag set when the bird should be drawn using the rotation cache. */
+	private volatile boolean mRotationCacheEnabled = true;
 
 	/** Screen width. */
 	private int mWidth;
@@ -54,20 +84,26 @@ public class DigitalBird implements GameObject {
 	private int mPositionX;
 	/** The Y position of the top left corner of the bird. */
 	private int mPositionY;
+	/** The Y position of the bird before the last simulation step. */
+	private int mPreviousPositionY;
 	/** Bird's vertical speed. The speed is set to a constant positive value when user press the button and decremented every frame. */
 	private float mVerticalSpeed;
 	/** A flag indicating whether the bird is under the user control. If false the bird will not fall down. This is set to true when game is started. */
 	private boolean mUnderUserControl;
 	/** A temporary value used to calculate the bird sprite index. */
 	private float mTotalDeltaTime;
+	/** The index of the current frame. */
+	private int mFrame;
+	/** The bird's angle in degrees, based on its vertical speed. */
+	private float mAngle;
 
-	public DigitalBird(final Resources resources) {
-		Bitmap bird = BitmapFactory.decodeResource(resources, R.drawable.bird_sprite);
-		BitmapShader birdShader = new BitmapShader(bird, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-		mBirdWidth = bird.getWidth() / 3; // There are 3 bird images in the image.
-		mBirdHeight = bird.getHeight();
-		mBirdPaint = new Paint();
-		mBirdPaint.setShader(birdShader);
+	public DigitalBird(final SpriteRegistry sprites) {
+		final Resources resources = sprites.getResources();
+		Sprite sprite = mSprite = sprites.getSprite("bird_sprite");
+		mSpriteBatch = sprites.getSpriteBatch();
+		mCacheRenderer = new SpriteRenderer(mSpriteBatch);
+		mBirdWidth = sprite.getWidth();
+		mBirdHeight = sprite.getHeight();
 
 		mVerticalSpeed = 0.0f;
 		mBirdBorderWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 7, resources.getDisplayMetrics());
@@ -78,12 +114,61 @@ public class DigitalBird implements GameObject {
 		mWidth = width;
 		mHeight = height;
 		mPositionX = width / 3;
-		mPositionY = height / 2;
+		mPreviousPositionY = mPositionY = height / 2;
+
+		// The rotated frames do not depend on the screen dimensions, so the cache is created only once
+		if (mRotationCache == null)
+			mRotationCache = createRotationCache();
+	}
+
+	/**
+	 * Enables or disables drawing the bird using the pre-rendered rotations. When disabled, the bird is rotated when drawn. The result is
+	 * almost the same, only the angle is not rounded, so this is useful to compare the performance of both.
+	 * @param enabled true to use the rotation cache
+	 */
+	public void setRotationCacheEnabled(final boolean enabled) {
+		mRotationCacheEnabled = enabled;
+	}
+
+	/**
+	 * Renders all frames at all angles.
+	 * @return the rotation cache
+	 */
+	private Bitmap createRotationCache() {
+		final Sprite sprite = mSprite;
+		final int frameCount = sprite.getFrameCount();
+		// The frame rotated around its pivot fits in a circle with the radius equal to the distance from the pivot to the farthest corner
+		final float pivotX = sprite.getPivotX();
+		final float pivotY = sprite.getPivotY();
+		final float radius = (float) Math.hypot(Math.max(pivotX, mBirdWidth - pivotX), Math.max(pivotY, mBirdHeight - pivotY));
+		final int cellSize = mCellSize = (int) Math.ceil(radius) * 2 + 2;
+
+		final Bitmap cache = Bitmap.createBitmap(cellSize * frameCount, cellSize * ANGLE_COUNT, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(cache);
+		final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		final Rect source = new Rect();
+		final RectF destination = new RectF(-pivotX, -pivotY, mBirdWidth - pivotX, mBirdHeight - pivotY);
+		for (int i = 0; i < ANGLE_COUNT; ++i) {
+			for (int frame = 0; frame < frameCount; ++frame) {
+				sprite.getFrameBounds(frame, source);
+				canvas.save();
+				canvas.translate(frame * cellSize + cellSize / 2, i * cellSize + cellSize / 2);
+				canvas.rotate(MIN_ANGLE + i * ANGLE_STEP);
+				canvas.drawBitmap(sprite.getAtlas(), source, destination, paint);
+				canvas.restore();
+			}
+		}
+		return cache;
+	}
 
-		// Create a local matrix for the paint that will draw the bird.
-		final Matrix matrix = mBirdMatrix = new Matrix();
-		matrix.postTranslate(mPositionX, mPositionY);
-		mBirdPaint.getShader().setLocalMatrix(matrix);
+	/**
+	 * Recycles the rotation cache. Use it only for a bird that is not drawn by the renderer thread, as it must not be drawn afterwards.
+	 */
+	public void recycle() {
+		final Bitmap rotationCache = mRotationCache;
+		mRotationCache = null;
+		if (rotationCache != null)
+			rotationCache.recycle();
 	}
 
 	public void fly() {
@@ -98,26 +183,39 @@ public class DigitalBird implements GameObject {
 	public void reset() {
 		mUnderUserControl = false;
 		mVerticalSpeed = 0.0f;
+		mAngle = 0.0f;
 		mPositionX = mWidth / 3;
-		mPositionY = mHeight / 2;
+		mPreviousPositionY = mPositionY = mHeight / 2;
+	}
 
-		// Create a local matrix for the paint that will draw the bird.
-		mBirdMatrix.postTranslate(mPositionX, mPositionY);
-		mBirdPaint.getShader().setLocalMatrix(mBirdMatrix);
+	/**
+	 * Returns the box used to check collisions. The box is a bit smaller than the sprite, as the bird does not fill the corners.
+	 * @param box the rectangle to be set to the hit box
+	 */
+	public void getHitBox(final Rect box) {
+		box.set(mPositionX + mBirdBorderWidth, mPositionY + mBirdBorderWidth, mPositionX + mBirdWidth - mBirdBorderWidth, mPositionY + mBirdHeight - mBirdBorderWidth);
 	}
 
-	public boolean intersect(final Rect rect) {
-		mTestRect.set(mPositionX + mBirdBorderWidth, mPositionY + mBirdBorderWidth, mPositionX + mBirdWidth - mBirdBorderWidth, mPositionY + mBirdHeight - mBirdBorderWidth);
-		final boolean collision = rect.intersect(mTestRect);
-		if (collision && mVerticalSpeed > -1.0f)
+	/**
+	 * Makes the bird fall after it hit an obstacle.
+	 */
+	public void hit() {
+		if (mVerticalSpeed > -1.0f)
 			mVerticalSpeed = -1.0f;
-		return collision;
 	}
 
-	/* package */int getPositionX() {
+	/**
+	 * Returns the X position of the left edge of the hit box.
+	 */
+	public int getPositionX() {
 		return mPositionX + mBirdBorderWidth;
 	}
 
+	@Override
+	public void saveState() {
+		mPreviousPositionY = mPositionY;
+	}
+
 	@Override
 	public void move(float scaledDeltaTime) {
 		calculateSprite(scaledDeltaTime);
@@ -128,7 +226,7 @@ public class DigitalBird implements GameObject {
 
 	private void calculateSprite(final float scaledDeltaTime) {
 		// Calculate the bird's angle based on it's vertical velocity
-		final float angle = mUnderUserControl ? (mVerticalSpeed >= -0.4 ? -30.0f : Math.min(90.0f, -mVerticalSpeed * 30.0f - 32.0f)) : 0.0f;
+		mAngle = mUnderUserControl ? (mVerticalSpeed >= -0.4 ? -30.0f : Math.min(90.0f, -mVerticalSpeed * 30.0f - 32.0f)) : 0.0f;
 
 		// Accumulate the total scaledDeltaTime. The total scaledDeltaTime is used to calculate the sprite index.
 		mTotalDeltaTime += scaledDeltaTime;
@@ -136,25 +234,64 @@ public class DigitalBird implements GameObject {
 		// Calculate the Y position based on scaledDeltaTime and vertical velocity
 		mPositionY -= mVerticalSpeed * scaledDeltaTime;
 
-		float spriteOffset = 0.0f;
+		int frame = 0;
 		if (mTotalDeltaTime > WINGS_SPEED)
-			spriteOffset += mBirdWidth;
+			frame++;
 		if (mTotalDeltaTime > WINGS_SPEED * 2)
-			spriteOffset += mBirdWidth;
+			frame++;
 		if (mTotalDeltaTime > WINGS_SPEED * 3) {
 			mTotalDeltaTime = 0;
-			spriteOffset = 0;
+			frame = 0;
 		}
+		mFrame = frame;
+	}
 
-		mBirdMatrix.reset();
-		mBirdMatrix.postTranslate(-spriteOffset, 0);
-		mBirdMatrix.postRotate(angle, mBirdWidth / 2, mBirdHeight / 2);
-		mBirdMatrix.postTranslate(mPositionX, mPositionY);
-		mBirdPaint.getShader().setLocalMatrix(mBirdMatrix);
+	@Override
+	public void writeSnapshot(final Snapshot snapshot) {
+		snapshot.positionX = mPositionX;
+		snapshot.positionY = mPositionY;
+		snapshot.previousPositionY = mPreviousPositionY;
+		snapshot.frame = mFrame;
+		snapshot.angle = mAngle;
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
-		canvas.drawRect(mPositionX, mPositionY, mPositionX + mBirdWidth, mPositionY + mBirdHeight, mBirdPaint);
+	public void getBounds(final Snapshot snapshot, final Rect bounds) {
+		// The bounds cover the bird rotated by any angle
+		final int cellSize = mCellSize;
+		final int left = snapshot.positionX + (int) Math.floor(mSprite.getPivotX()) - cellSize / 2 - 1;
+		final int top = (int) Math.floor(mSprite.getPivotY()) - cellSize / 2 - 1;
+		bounds.set(left, Math.min(snapshot.previousPositionY, snapshot.positionY) + top, left + cellSize + 2,
+				Math.max(snapshot.previousPositionY, snapshot.positionY) + top + cellSize + 2);
+	}
+
+	@Override
+	public void draw(final Canvas canvas, final Snapshot snapshot, final float interpolation) {
+		final int positionX = snapshot.positionX;
+		final int positionY = snapshot.positionY;
+		final float offsetY = (snapshot.previousPositionY - positionY) * (1.0f - interpolation);
+
+		if (mRotationCacheEnabled) {
+			// Copy the cell with the current frame at the closest angle, with the pivot at the same place as the pivot of the unrotated frame
+			final int cellSize = mCellSize;
+			final int angle = Math.max(0, Math.min(ANGLE_COUNT - 1, Math.round((snapshot.angle - MIN_ANGLE) / ANGLE_STEP)));
+			mCacheSource.set(snapshot.frame * cellSize, angle * cellSize, (snapshot.frame + 1) * cellSize, (angle + 1) * cellSize);
+			// Integer coordinates, so that the cell is simply copied to the canvas
+			final int left = Math.round(positionX + mSprite.getPivotX()) - cellSize / 2;
+			final int top = Math.round(positionY + offsetY + mSprite.getPivotY()) - cellSize / 2;
+			mCacheRenderer.draw(canvas, mRotationCache, mCacheSource, left, top);
+			return;
+		}
+
+		// Rotate the canvas around the pivot and draw the frame. The batch is drawn with the canvas matrix, so it's flushed first.
+		if (mSpriteBatch.isDrawing(canvas))
+			mSpriteBatch.flush();
+		final float pivotX = mSprite.getPivotX();
+		final float pivotY = mSprite.getPivotY();
+		canvas.save();
+		canvas.translate(positionX + pivotX, positionY + offsetY + pivotY);
+		canvas.rotate(snapshot.angle);
+		mSpriteRenderer.draw(canvas, mSprite, snapshot.frame, -pivotX, -pivotY);
+		canvas.restore();
 	}
 }
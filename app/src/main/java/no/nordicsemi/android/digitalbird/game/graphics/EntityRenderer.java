@@ -0,0 +1,60 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import no.nordicsemi.android.digitalbird.game.entity.EntitySnapshot;
+
+/**
+ * Draws entities of a single kind. Unlike a {@link GameObject}, which keeps its own state, a renderer is shared by all entities of its kind.
+ * Their state is kept in the {@link no.nordicsemi.android.digitalbird.game.entity.EntityStore} and moved by the systems.
+ */
+public interface EntityRenderer {
+	/**
+	 * Sets the screen dimension. The renderer may calculate the size of entities in this method knowing the screen size.
+	 * @param width the available width
+	 * @param height the available height
+	 */
+	public void setScreenDimensions(final int width, final int height);
+
+	/**
+	 * Returns the area the entity is drawn in. The area covers both the previous and the current state, so that the entity is inside it
+	 * whatever interpolation it is drawn with.
+	 * @param snapshot the state of the entities
+	 * @param index the index of the entity
+	 * @param bounds the rectangle to be set to the bounds of the entity
+	 */
+	public void getBounds(final EntitySnapshot snapshot, final int index, final Rect bounds);
+
+	/**
+	 * Draws the entity on the given canvas.
+	 * @param canvas the canvas to draw on
+	 * @param snapshot the state of the entities
+	 * @param index the index of the entity
+	 * @param interpolation the position between the previous (0.0) and the current (1.0) state at which the entity should be drawn
+	 */
+	public void draw(final Canvas canvas, final EntitySnapshot snapshot, final int index, final float interpolation);
+}
@@ -22,24 +22,23 @@
 
 package no.nordicsemi.android.digitalbird.game.graphics;
 
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Shader;
+import android.graphics.Rect;
 
-import no.nordicsemi.android.digitalbird.R;
 
-public class Fireworks implements GameObject {
+public class Fireworks implements GameObject<Fireworks.Snapshot> {
 	private final static float FRAME_SPEED = 120; // The higher number, the slower the sprites are changing.
 
-	private final Paint mFireworksPaint;
+	/** The state of the fireworks needed to draw them. */
+	public static class Snapshot {
+		private int frame;
+	}
+
+	private final Sprite mSprite;
 	private final int mFireworksWidth;
 	private final int mFireworksHeight;
-	private Matrix mFireworksMatrix;
+	/** Used only when drawing. */
+	private final SpriteRenderer mSpriteRenderer;
 
 	/** The X position of the top left corner of the plane. */
 	private float mPositionX;
@@ -47,14 +46,14 @@ public class Fireworks implements GameObject {
 	private float mPositionY;
 	/** A temporary value used to calculate the plane sprite index. */
 	private float mTotalDeltaTime;
-
-	public Fireworks(final Resources resources) {
-		Bitmap fireworks = BitmapFactory.decodeResource(resources, R.drawable.fireworks_sprite);
-		BitmapShader planeShader = new BitmapShader(fireworks, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mFireworksWidth = fireworks.getWidth() / 5; // There are 5 fireworks images in the image.
-		mFireworksHeight = fireworks.getHeight();
-		mFireworksPaint = new Paint();
-		mFireworksPaint.setShader(planeShader);
+	/** The index of the current frame. */
+	private int mFrame;
+
+	public Fireworks(final SpriteRegistry sprites) {
+		mSpriteRenderer = new SpriteRenderer(sprites.getSpriteBatch());
+		mSprite = sprites.getSprite("fireworks_sprite");
+		mFireworksWidth = mSprite.getWidth();
+		mFireworksHeight = mSprite.getHeight();
 	}
 
 	@Override
@@ -62,15 +61,11 @@ public class Fireworks implements GameObject {
 		// Fireworks position
 		mPositionX = width - mFireworksWidth;
 		mPositionY = height  - mFireworksHeight;
-
-		// Create a local matrix for the paint that will draw the plane.
-		final Matrix matrix = mFireworksMatrix = new Matrix();
-		matrix.postTranslate(mPositionX, mPositionY);
-		mFireworksPaint.getShader().setLocalMatrix(matrix);
 	}
 
 	public void reset() {
 		mTotalDeltaTime = 0;
+		mFrame = 0;
 	}
 
 	@Override
@@ -82,29 +77,42 @@ public class Fireworks implements GameObject {
 		// Accumulate the total scaledDeltaTime. The total scaledDeltaTime is used to calculate the sprite index.
 		mTotalDeltaTime += scaledDeltaTime;
 
-		float spriteOffset = 0.0f;
+		int frame = 0;
 		if (mTotalDeltaTime > FRAME_SPEED)
-			spriteOffset += mFireworksWidth;
+			frame++;
 		if (mTotalDeltaTime > FRAME_SPEED * 2)
-			spriteOffset += mFireworksWidth;
+			frame++;
 		if (mTotalDeltaTime > FRAME_SPEED * 3)
-			spriteOffset += mFireworksWidth;
+			frame++;
 		if (mTotalDeltaTime > FRAME_SPEED * 4)
-			spriteOffset += mFireworksWidth;
+			frame++;
 		if (mTotalDeltaTime > FRAME_SPEED * 5) {
 			// The first frame is displayed only once per Game Over.
 			mTotalDeltaTime = FRAME_SPEED;
-			spriteOffset = mFireworksWidth;
+			frame = 1;
 		}
+		mFrame = frame;
+	}
 
-		mFireworksMatrix.reset();
-		mFireworksMatrix.postTranslate(mPositionX - spriteOffset, mPositionY);
+	@Override
+	public void saveState() {
+		// Fireworks do not move, only the sprite changes
+	}
 
-		mFireworksPaint.getShader().setLocalMatrix(mFireworksMatrix);
+	@Override
+	public void writeSnapshot(final Snapshot snapshot) {
+		snapshot.frame = mFrame;
+	}
+
+	@Override
+	public void getBounds(final Snapshot snapshot, final Rect bounds) {
+		final int left = (int) mPositionX;
+		final int top = (int) mPositionY;
+		bounds.set(left, top, left + mFireworksWidth + 1, top + mFireworksHeight + 1);
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
-		canvas.drawRect(mPositionX, mPositionY, mPositionX + mFireworksWidth, mPositionY + mFireworksHeight, mFireworksPaint);
+	public void draw(final Canvas canvas, final Snapshot snapshot, final float interpolation) {
+		mSpriteRenderer.draw(canvas, mSprite, snapshot.frame, mPositionX, mPositionY);
 	}
 }
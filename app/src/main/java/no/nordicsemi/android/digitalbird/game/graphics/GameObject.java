@@ -23,8 +23,14 @@
 package no.nordicsemi.android.digitalbird.game.graphics;
 
 import android.graphics.Canvas;
+import android.graphics.Rect;
 
-public interface GameObject {
+/**
+ * A game object. The object is moved by the simulation, which then writes the state needed to draw the object into a snapshot.
+ * Drawing uses only the snapshot, never the simulation state, so that the simulation may continue while the last snapshot is drawn.
+ * @param <S> the snapshot type
+ */
+public interface GameObject<S> {
 	/**
 	 * Sets the screen dimension. An object may calculate its size in this method knowing the screen size.
 	 * @param width the available width
@@ -38,9 +44,31 @@ public interface GameObject {
 	 */
 	public void move(final float scaledDeltaTime);
 
+	/**
+	 * Remembers the current state of the object as the previous one. This method is called before each simulation step so that the object
+	 * may be drawn in between the last two states.
+	 */
+	public void saveState();
+
+	/**
+	 * Writes the previous and the current state of the object into the given snapshot. The snapshot is reused, all its fields must be written.
+	 * @param snapshot the snapshot to write to
+	 */
+	public void writeSnapshot(final S snapshot);
+
+	/**
+	 * Returns the area the object is drawn in. The area covers both the previous and the current state, so that the object is inside it
+	 * whatever interpolation it is drawn with. The area is used to find the dirty region, and to skip drawing objects outside of the screen.
+	 * @param snapshot the state of the object
+	 * @param bounds the rectangle to be set to the bounds of the object
+	 */
+	public void getBounds(final S snapshot, final Rect bounds);
+
 	/**
 	 * Draws the object on the given canvas.
 	 * @param canvas the canvas to draw on
+	 * @param snapshot the state of the object to be drawn
+	 * @param interpolation the position between the previous (0.0) and the current (1.0) state at which the object should be drawn
 	 */
-	public void draw(final Canvas canvas);
+	public void draw(final Canvas canvas, final S snapshot, final float interpolation);
 }
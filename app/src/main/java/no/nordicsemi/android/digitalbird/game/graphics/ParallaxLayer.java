@@ -0,0 +1,169 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * A horizontally repeating layer of the background, scrolling to the left with a speed relative to the world. Layers further away scroll
+ * slower, which gives the impression of depth.
+ * <p>
+ * The tile is repeated into a strip one tile wider than the screen when the screen dimensions change. The layer is then drawn with a single
+ * bitmap copy from the strip, starting at the scroll offset, instead of filling the screen width with a repeating shader. The offset is
+ * wrapped to the tile width, so that it never grows large enough to lose precision.</p>
+ * <p>
+ * The layer does not keep the offset used for drawing. The simulation scrolls the layer and writes its offset into the snapshot, the offset
+ * from the snapshot is then drawn.</p>
+ */
+public class ParallaxLayer {
+	private final Bitmap mTile;
+	/** The layer offset changes by this many pixels when the world scrolls by one pixel. */
+	private final float mSpeedFactor;
+	/** The tile width. The layer looks the same after scrolling by this many pixels. */
+	private final int mPeriod;
+	/** The tile repeated to cover the screen width and one tile more. */
+	private Bitmap mStrip;
+	private int mWidth;
+	private int mPositionY;
+	/** The scroll offset, always in range [0, tile width). */
+	private float mOffset;
+	// The rectangles used to draw the strip. Used only when drawing.
+	private final Rect mSource = new Rect();
+	private final RectF mDestination = new RectF();
+
+	/**
+	 * Creates the layer.
+	 * @param tile the bitmap repeated horizontally
+	 * @param speedFactor the speed of the layer relative to the world, 1.0 for the layer moving with the pipes
+	 */
+	public ParallaxLayer(final Bitmap tile, final float speedFactor) {
+		mTile = tile;
+		mSpeedFactor = speedFactor;
+		mPeriod = tile.getWidth();
+	}
+
+	/**
+	 * Sets the screen width and the position of the layer. The strip is created again if the width has changed.
+	 * The old strip is not recycled, as it may be being drawn on the renderer thread.
+	 * @param width the screen width
+	 * @param positionY the Y position of the top edge of the layer
+	 */
+	public void setScreenDimensions(final int width, final int positionY) {
+		mPositionY = positionY;
+		if (mStrip != null && mWidth == width)
+			return;
+		mWidth = width;
+
+		// The strip must cover the screen, and one pixel more for the fraction of the offset, from any offset within the first tile
+		final int period = mPeriod;
+		final int tileCount = (width + period) / period + 1;
+		final Bitmap strip = Bitmap.createBitmap(tileCount * period, mTile.getHeight(), Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(strip);
+		for (int i = 0; i < tileCount; ++i)
+			canvas.drawBitmap(mTile, i * period, 0, null);
+		mStrip = strip;
+	}
+
+	/**
+	 * Recycles the strip. The layer must not be drawn afterwards, until the screen dimensions are set again.
+	 */
+	public void recycle() {
+		final Bitmap strip = mStrip;
+		mStrip = null;
+		if (strip != null)
+			strip.recycle();
+	}
+
+	/**
+	 * Returns the Y position of the top edge of the layer.
+	 */
+	public int getPositionY() {
+		return mPositionY;
+	}
+
+	/**
+	 * Returns the layer height, the height of the tile.
+	 */
+	public int getHeight() {
+		return mTile.getHeight();
+	}
+
+	/**
+	 * Returns the scroll offset, in range [0, tile width).
+	 */
+	public float getOffset() {
+		return mOffset;
+	}
+
+	/**
+	 * Sets the scroll offset. The offset is wrapped to the tile width.
+	 * @param offset the X position in the repeated tiles of the left edge of the screen
+	 */
+	public void setOffset(final float offset) {
+		mOffset = wrap(offset);
+	}
+
+	/**
+	 * Scrolls the layer to the left by the world distance multiplied by the speed factor.
+	 * @param distance the distance the world has scrolled in pixels
+	 * @return the distance the layer has scrolled
+	 */
+	public float scroll(final float distance) {
+		final float translation = distance * mSpeedFactor;
+		mOffset = wrap(mOffset + translation);
+		return translation;
+	}
+
+	/**
+	 * Draws the layer scrolled by the given offset.
+	 * @param canvas the canvas to draw on
+	 * @param offset the scroll offset, may be outside of the tile width by less than a tile
+	 */
+	public void draw(final Canvas canvas, final float offset) {
+		final float wrappedOffset = wrap(offset);
+		final int left = (int) wrappedOffset;
+		final float fraction = wrappedOffset - left;
+		final Bitmap strip = mStrip;
+		// The screen dimensions may have just changed, the width must not exceed the strip it's drawn from
+		final int width = Math.min(mWidth, strip.getWidth() - mPeriod - 1);
+		final int height = strip.getHeight();
+		final int positionY = mPositionY;
+
+		mSource.set(left, 0, left + width + 1, height);
+		mDestination.set(-fraction, positionY, width + 1 - fraction, positionY + height);
+		canvas.drawBitmap(strip, mSource, mDestination, null);
+	}
+
+	private float wrap(final float offset) {
+		final int period = mPeriod;
+		float wrapped = offset % period;
+		if (wrapped < 0)
+			wrapped += period;
+		// Adding the period to a tiny negative number may round to the period
+		return wrapped < period ? wrapped : 0;
+	}
+}
@@ -24,32 +24,50 @@ package no.nordicsemi.android.digitalbird.game.graphics;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Shader;
 import android.util.TypedValue;
 
-import no.nordicsemi.android.digitalbird.R;
-
-public class Pipe implements GameObject {
+import no.nordicsemi.android.digitalbird.game.entity.EntitySnapshot;
+import no.nordicsemi.android.digitalbird.game.entity.EntityStore;
+
+/**
+ * The renderer of pipes. Pipes are entities in the {@link EntityStore}: the box of a pipe entity is the span between the top and the bottom
+ * part of the pipe, which is the only place the bird may fly through. A single object draws all pipes, so the bitmaps, paints and shaders are
+ * not duplicated per pipe.
+ * <p>
+ * The span height is constant, so each part of a pipe, the top one and the bottom one, looks the same wherever the span is, only more or less
+ * of it is visible. Both parts are composited side by side into a single column bitmap, as tall as the highest visible part, when the screen
+ * dimensions are set. A pipe is then drawn with two regions of the column, showing as much of each part as needed. As all regions come from
+ * the same bitmap, the pipes are added to the {@link SpriteBatch} and drawn with a single call.</p>
+ * <p>
+ * The column cache may be disabled, e.g. to compare the performance. The valves are then drawn from the sprite atlas, and the pipe bitmap
+ * is repeated vertically with a shader. The shader is never moved, instead the canvas is translated to the pipe position.</p>
+ */
+public class Pipe implements EntityRenderer {
 	private final static float PIPE_SPEED = -1; // negative as pipes move to the left
 
 	private final Paint mPipePaint;
-	private final Paint mTopValvePaint;
-	private final Paint mBottomValvePaint;
+	private final Sprite mTopValveSprite;
+	private final Sprite mBottomValveSprite;
 	private final int mPipeWidth;
 	private final int mValveWidth;
 	private final int mValveHeight;
 	private final int mSpanHeight;
-	private Matrix mPipeMatrix;
-	private Matrix mTopValveMatrix;
-	private Matrix mBottomValveMatrix;
-	/** A temporary rectangle to calculate collisions. */
-	private final Rect mTestRect = new Rect();
+	/** Used only when drawing. */
+	private final SpriteRenderer mSpriteRenderer;
+	/** The region of the column drawn. Used only when drawing. */
+	private final Rect mPartSource = new Rect();
+	/**
+	 * The composited parts of the pipe. On the left the top part, the shaft with the valve at the bottom, aligned to the bottom of the bitmap.
+	 * On the right the bottom part, the valve with the shaft below, aligned to the top.
+	 */
+	private Bitmap mColumn;
+	/** Flag set when pipes should be drawn using the composited parts. */
+	private volatile boolean mColumnCacheEnabled = true;
 
 	/** Screen width. */
 	private int mWidth;
@@ -59,34 +77,22 @@ public class Pipe implements GameObject {
 	private int mMinSpanPositionY;
 	/** The maximum value of the span position Y. The span may not end too log (grass). */
 	private int mMaxSpanPositionY;
-	/** The Y position of the top of the span. */
-	private int mSpanPositionY;
-	/** The current X position of the pipe. The pipe moves from right ot left, so the X position changes from mWidth to -mValveWidth. */
-	private float mPositionX;
-	/** Flag indicating whether the pipe has been passed by the bird. */
-	private boolean mPassed;
-
-	public Pipe(final Resources resources) {
-		Bitmap pipe = BitmapFactory.decodeResource(resources, R.drawable.pipe);
+
+	public Pipe(final SpriteRegistry sprites) {
+		final Resources resources = sprites.getResources();
+		Bitmap pipe = sprites.getBitmap("pipe");
 		BitmapShader pipeShader = new BitmapShader(pipe, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
 		mPipeWidth = pipe.getWidth();
 		mPipePaint = new Paint();
 		mPipePaint.setShader(pipeShader);
 
-		Bitmap topValve = BitmapFactory.decodeResource(resources, R.drawable.pipe_top_valve);
-		BitmapShader topValveShader = new BitmapShader(topValve, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mValveWidth = topValve.getWidth();
-		mValveHeight = topValve.getHeight();
-		mTopValvePaint = new Paint();
-		mTopValvePaint.setShader(topValveShader);
-
-		Bitmap bottomValve = BitmapFactory.decodeResource(resources, R.drawable.pipe_bottom_valve);
-		BitmapShader bottomValveShader = new BitmapShader(bottomValve, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mBottomValvePaint = new Paint();
-		mBottomValvePaint.setShader(bottomValveShader);
+		mSpriteRenderer = new SpriteRenderer(sprites.getSpriteBatch());
+		mTopValveSprite = sprites.getSprite("pipe_top_valve");
+		mBottomValveSprite = sprites.getSprite("pipe_bottom_valve");
+		mValveWidth = mTopValveSprite.getWidth();
+		mValveHeight = mTopValveSprite.getHeight();
 
 		mSpanHeight = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 100, resources.getDisplayMetrics());
-		mPassed = false;
 	}
 
 	@Override
@@ -97,90 +103,121 @@ public class Pipe implements GameObject {
 
 		mMinSpanPositionY = mHeight / 8;
 		mMaxSpanPositionY = mHeight *7/8;
+
+		// The old bitmaps are not recycled, as they may be being drawn on the renderer thread
+		mColumn = createColumn(Math.max(mMaxSpanPositionY - mSpanHeight, mValveHeight), Math.max(mHeight - mMinSpanPositionY - mSpanHeight, mValveHeight));
 	}
 
 	/**
-	 * Sets the X offset to out of screen and randomize the span position.
+	 * Enables or disables drawing pipes using the composited parts. When disabled, each pipe is drawn part by part: two shafts and two valves.
+	 * @param enabled true to use the column cache
 	 */
-	public Pipe reset() {
-		final float initPosition = mPositionX = mWidth;
-		final float pipeOffset = (mValveWidth - mPipeWidth) / 2;
-		final int spanPositionY = mSpanPositionY = mMinSpanPositionY + (int) (Math.random() * (mMaxSpanPositionY - mMinSpanPositionY - mSpanHeight));
-
-		// Create a local matrix for the paint that will draw the pipes.
-		Matrix matrix = mPipeMatrix = new Matrix();
-		matrix.postTranslate(initPosition + pipeOffset, 0);
-		mPipePaint.getShader().setLocalMatrix(matrix);
-
-		matrix = mTopValveMatrix = new Matrix();
-		matrix.postTranslate(initPosition, spanPositionY - mValveHeight); // -mValveHeight is unnecessary
-		mTopValvePaint.getShader().setLocalMatrix(matrix);
-
-		matrix = mBottomValveMatrix = new Matrix();
-		matrix.postTranslate(initPosition, spanPositionY + mSpanHeight);
-		mBottomValvePaint.getShader().setLocalMatrix(matrix);
-
-		mPassed = false;
-		return this;
+	public void setColumnCacheEnabled(final boolean enabled) {
+		mColumnCacheEnabled = enabled;
+	}
+
+	private Bitmap createColumn(final int topHeight, final int bottomHeight) {
+		final int height = Math.max(topHeight, bottomHeight);
+		final Bitmap bitmap = Bitmap.createBitmap(mValveWidth * 2, height, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		final SpriteRenderer renderer = new SpriteRenderer();
+
+		// The top part
+		canvas.save();
+		canvas.translate((mValveWidth - mPipeWidth) / 2, 0);
+		canvas.drawRect(0, height - topHeight, mPipeWidth, height - mValveHeight, mPipePaint);
+		canvas.restore();
+		renderer.draw(canvas, mTopValveSprite, 0, 0, height - mValveHeight);
+
+		// The bottom part
+		canvas.save();
+		canvas.translate(mValveWidth + (mValveWidth - mPipeWidth) / 2, 0);
+		canvas.drawRect(0, mValveHeight, mPipeWidth, bottomHeight, mPipePaint);
+		canvas.restore();
+		renderer.draw(canvas, mBottomValveSprite, 0, mValveWidth, 0);
+		return bitmap;
 	}
 
 	/**
-	 * Checks the collision between the pipe and the Digital Bird.
-	 * @param bird the Digital Bird object
-	 * @return true if the bird hit the pipe, false otherwise
+	 * Recycles the composited parts. Use it only for a pipe renderer that is not used by the renderer thread, as it must not draw afterwards.
 	 */
-	public boolean checkCollision(final DigitalBird bird) {
-		final int positionX = (int) mPositionX;
-		mTestRect.set(positionX, -Integer.MAX_VALUE, positionX + mValveWidth, mSpanPositionY);
-		if (bird.intersect(mTestRect))
-			return true;
-
-		mTestRect.set(positionX, mSpanPositionY + mSpanHeight, positionX + mValveWidth, mHeight);
-		return bird.intersect(mTestRect);
+	public void recycle() {
+		final Bitmap column = mColumn;
+		mColumn = null;
+		if (column != null)
+			column.recycle();
 	}
 
 	/**
-	 * Returns true if the pips is no longer visible and may be released for future use.
-	 * @return true if pipe is ready to be released
+	 * Returns the width of the pipe, including the valves.
 	 */
-	public boolean isPipeReadyToRelease() {
-		return mPositionX + mValveWidth < 0;
+	public int getWidth() {
+		return mValveWidth;
 	}
 
-	public boolean isPipeScored(final DigitalBird bird) {
-		if (!mPassed && bird.getPositionX() > mPositionX + mPipeWidth) {
-			mPassed = true;
-			return true;
-		}
+	/**
+	 * Returns the distance from the left edge of the valves the bird has to pass to score, the width of the pipe body. The bird scores
+	 * a little before it has passed the whole valve.
+	 */
+	public int getScoringWidth() {
+		return mPipeWidth;
+	}
 
-		return false;
+	/**
+	 * Adds a new pipe just behind the right edge of the screen, with a random span position. The pipe moves to the left and scores a point
+	 * when passed.
+	 * @param store the entity store
+	 * @param kind the kind of pipe entities
+	 * @return the index of the new pipe, or -1 if the store is full
+	 */
+	public int spawn(final EntityStore store, final int kind) {
+		final int spanPositionY = mMinSpanPositionY + (int) (Math.random() * (mMaxSpanPositionY - mMinSpanPositionY - mSpanHeight));
+		final int index = store.add(kind, EntityStore.FLAG_COLUMN | EntityStore.FLAG_SCORABLE, mWidth, spanPositionY, mValveWidth, mSpanHeight);
+		if (index >= 0)
+			store.setVelocity(index, PIPE_SPEED, 0);
+		return index;
 	}
 
 	@Override
-	public void move(final float scaledDeltaTime) {
-		final float translation = scaledDeltaTime * PIPE_SPEED;
-		mPipeMatrix.postTranslate(translation, 0);
-		mTopValveMatrix.postTranslate(translation, 0);
-		mBottomValveMatrix.postTranslate(translation, 0);
-		mPipePaint.getShader().setLocalMatrix(mPipeMatrix);
-		mTopValvePaint.getShader().setLocalMatrix(mTopValveMatrix);
-		mBottomValvePaint.getShader().setLocalMatrix(mBottomValveMatrix);
-		mPositionX += translation;
+	public void getBounds(final EntitySnapshot snapshot, final int index, final Rect bounds) {
+		final float positionX = snapshot.getPositionX(index);
+		final float previousPositionX = snapshot.getPreviousPositionX(index);
+		bounds.set((int) Math.floor(Math.min(previousPositionX, positionX)), 0, (int) Math.ceil(Math.max(previousPositionX, positionX)) + mValveWidth, mHeight);
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
-		int pipeWidth = mPipeWidth;
-		int valveWidth = mValveWidth;
-		int valveHeight = mValveHeight;
-		float valvePositionX = mPositionX;
-		float pipePositionX = valvePositionX + (valveWidth - pipeWidth) / 2;
-		float spanPositionY = mSpanPositionY;
-		float spanHeight = mSpanHeight;
-
-		canvas.drawRect(pipePositionX, 0, pipePositionX + pipeWidth, spanPositionY - valveHeight, mPipePaint);
-		canvas.drawRect(valvePositionX, spanPositionY - valveHeight, valvePositionX + valveWidth, spanPositionY, mTopValvePaint);
-		canvas.drawRect(valvePositionX, spanPositionY + spanHeight, valvePositionX + valveWidth, spanPositionY + spanHeight + valveHeight, mBottomValvePaint);
-		canvas.drawRect(pipePositionX, spanPositionY + spanHeight + valveHeight, pipePositionX + pipeWidth, mHeight, mPipePaint);
+	public void draw(final Canvas canvas, final EntitySnapshot snapshot, final int index, final float interpolation) {
+		final int valveHeight = mValveHeight;
+		final float previousPositionX = snapshot.getPreviousPositionX(index);
+		final float valvePositionX = previousPositionX + (snapshot.getPositionX(index) - previousPositionX) * interpolation;
+		final float spanPositionY = snapshot.getPositionY(index);
+		final float spanHeight = mSpanHeight;
+
+		if (mColumnCacheEnabled) {
+			final Rect source = mPartSource;
+			final Bitmap column = mColumn;
+			final int columnHeight = column.getHeight();
+
+			// The bottom of the top part is at the span, the bottom part ends at the ground
+			final int topHeight = Math.min((int) spanPositionY, columnHeight);
+			source.set(0, columnHeight - topHeight, mValveWidth, columnHeight);
+			mSpriteRenderer.draw(canvas, column, source, valvePositionX, spanPositionY - topHeight);
+
+			final int bottomHeight = Math.min(mHeight - (int) (spanPositionY + spanHeight), columnHeight);
+			source.set(mValveWidth, 0, mValveWidth * 2, bottomHeight);
+			mSpriteRenderer.draw(canvas, column, source, valvePositionX, spanPositionY + spanHeight);
+			return;
+		}
+
+		// The pipe shader repeats from the origin, so the canvas is translated to the pipe. The shafts are drawn directly, so anything added
+		// to the batch before must have been flushed.
+		canvas.save();
+		canvas.translate(valvePositionX + (mValveWidth - mPipeWidth) / 2, 0);
+		canvas.drawRect(0, 0, mPipeWidth, spanPositionY - valveHeight, mPipePaint);
+		canvas.drawRect(0, spanPositionY + spanHeight + valveHeight, mPipeWidth, mHeight, mPipePaint);
+		canvas.restore();
+
+		mSpriteRenderer.draw(canvas, mTopValveSprite, 0, valvePositionX, spanPositionY - valveHeight);
+		mSpriteRenderer.draw(canvas, mBottomValveSprite, 0, valvePositionX, spanPositionY + spanHeight);
 	}
 }
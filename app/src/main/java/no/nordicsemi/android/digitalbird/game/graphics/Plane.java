@@ -22,26 +22,29 @@
 
 package no.nordicsemi.android.digitalbird.game.graphics;
 
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Shader;
+import android.graphics.Rect;
 
-import no.nordicsemi.android.digitalbird.R;
 
-public class Plane implements GameObject {
+public class Plane implements GameObject<Plane.Snapshot> {
 	private final static float WIND_SPEED = 80; // The higher number, the slower the sprites are changing.
 	private final static float PLANE_SPEED = 6; // The higher number, the slower the plane flies.
 
-	private final Paint mPlanePaint;
-	private final Paint mPlaneReturnsPaint;
+	/** The state of the plane needed to draw it. */
+	public static class Snapshot {
+		private float positionX;
+		private float positionY;
+		private float previousPositionX;
+		private int frame;
+		private boolean flyingFromRight;
+	}
+
+	private final Sprite mPlaneSprite;
+	private final Sprite mPlaneReturnsSprite;
 	private final int mPlaneWidth;
 	private final int mPlaneHeight;
-	private Matrix mPlaneMatrix;
+	/** Used only when drawing. */
+	private final SpriteRenderer mSpriteRenderer;
 
 	/** Screen width. */
 	private int mWidth;
@@ -51,23 +54,21 @@ public class Plane implements GameObject {
 	private float mPositionX;
 	/** The Y position of the top left corner of the plane. */
 	private float mPositionY;
+	/** The X position of the plane before the last simulation step. */
+	private float mPreviousPositionX;
 	/** A temporary value used to calculate the plane sprite index. */
 	private float mTotalDeltaTime;
+	/** The index of the current frame. */
+	private int mFrame;
 	/** Flag set to true if the plane goes from right to left. Initially it's set to true. */
 	private boolean mPlaneFlyingFromRight;
 
-	public Plane(final Resources resources) {
-		Bitmap plane = BitmapFactory.decodeResource(resources, R.drawable.plane_sprite);
-		BitmapShader planeShader = new BitmapShader(plane, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mPlaneWidth = plane.getWidth() / 3; // There are 3 plane images in the image.
-		mPlaneHeight = plane.getHeight();
-		mPlanePaint = new Paint();
-		mPlanePaint.setShader(planeShader);
-
-		Bitmap planeReturns = BitmapFactory.decodeResource(resources, R.drawable.plane_returns_sprite);
-		BitmapShader planeReturnsShader = new BitmapShader(planeReturns, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-		mPlaneReturnsPaint = new Paint();
-		mPlaneReturnsPaint.setShader(planeReturnsShader);
+	public Plane(final SpriteRegistry sprites) {
+		mSpriteRenderer = new SpriteRenderer(sprites.getSpriteBatch());
+		mPlaneSprite = sprites.getSprite("plane_sprite");
+		mPlaneReturnsSprite = sprites.getSprite("plane_returns_sprite");
+		mPlaneWidth = mPlaneSprite.getWidth();
+		mPlaneHeight = mPlaneSprite.getHeight();
 	}
 
 	@Override
@@ -77,14 +78,13 @@ public class Plane implements GameObject {
 
 		// Initial plane position and direction
 		mPlaneFlyingFromRight = true;
-		mPositionX = width * 2;
+		mPreviousPositionX = mPositionX = width * 2;
 		mPositionY = height / 4;
+	}
 
-		// Create a local matrix for the paint that will draw the plane.
-		final Matrix matrix = mPlaneMatrix = new Matrix();
-		matrix.postTranslate(mPositionX, mPositionY);
-		mPlanePaint.getShader().setLocalMatrix(matrix);
-		mPlaneReturnsPaint.getShader().setLocalMatrix(matrix);
+	@Override
+	public void saveState() {
+		mPreviousPositionX = mPositionX;
 	}
 
 	@Override
@@ -112,27 +112,38 @@ public class Plane implements GameObject {
 			mPositionX += scaledDeltaTime * 0.95f / PLANE_SPEED; // on the way back the plane is further away, so it's flying slower
 		}
 
-		float spriteOffset = 0.0f;
+		int frame = 0;
 		if (mTotalDeltaTime > WIND_SPEED)
-			spriteOffset += mPlaneWidth;
+			frame++;
 		if (mTotalDeltaTime > WIND_SPEED * 2)
-			spriteOffset += mPlaneWidth;
+			frame++;
 		if (mTotalDeltaTime > WIND_SPEED * 3) {
 			mTotalDeltaTime = 0;
-			spriteOffset = 0;
+			frame = 0;
 		}
+		mFrame = frame;
+	}
 
-		mPlaneMatrix.reset();
-		mPlaneMatrix.postTranslate(mPositionX - spriteOffset, mPositionY);
+	@Override
+	public void writeSnapshot(final Snapshot snapshot) {
+		snapshot.positionX = mPositionX;
+		snapshot.positionY = mPositionY;
+		snapshot.previousPositionX = mPreviousPositionX;
+		snapshot.frame = mFrame;
+		snapshot.flyingFromRight = mPlaneFlyingFromRight;
+	}
 
-		if (mPlaneFlyingFromRight)
-			mPlanePaint.getShader().setLocalMatrix(mPlaneMatrix);
-		else
-			mPlaneReturnsPaint.getShader().setLocalMatrix(mPlaneMatrix);
+	@Override
+	public void getBounds(final Snapshot snapshot, final Rect bounds) {
+		final int top = (int) Math.floor(snapshot.positionY);
+		bounds.set((int) Math.floor(Math.min(snapshot.previousPositionX, snapshot.positionX)), top,
+				(int) Math.ceil(Math.max(snapshot.previousPositionX, snapshot.positionX)) + mPlaneWidth, top + mPlaneHeight + 1);
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
-		canvas.drawRect(mPositionX, mPositionY, mPositionX + mPlaneWidth, mPositionY + mPlaneHeight, mPlaneFlyingFromRight ? mPlanePaint : mPlaneReturnsPaint);
+	public void draw(final Canvas canvas, final Snapshot snapshot, final float interpolation) {
+		final float positionX = snapshot.previousPositionX + (snapshot.positionX - snapshot.previousPositionX) * interpolation;
+		final Sprite sprite = snapshot.flyingFromRight ? mPlaneSprite : mPlaneReturnsSprite;
+		mSpriteRenderer.draw(canvas, sprite, snapshot.frame, positionX, snapshot.positionY);
 	}
 }
@@ -0,0 +1,118 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * A region of the {@link SpriteAtlas}. A sprite may be a sprite sheet, with frames of the same size laid out horizontally, each in its own
+ * padded cell. All dimensions are in the pixels of the atlas bitmap, scaled for the screen density, so the frames may differ by a pixel.
+ */
+public class Sprite {
+	private final String mName;
+	private final Bitmap mAtlas;
+	private final Rect mBounds;
+	/** The regions of the frames. */
+	private final Rect[] mFrames;
+	private final int mFrameWidth;
+	private final float mPivotX;
+	private final float mPivotY;
+
+	/* package */ Sprite(final String name, final Bitmap atlas, final Rect[] frames, final float pivotX, final float pivotY) {
+		mName = name;
+		mAtlas = atlas;
+		mFrames = frames;
+		mBounds = new Rect(frames[0]);
+		mBounds.union(frames[frames.length - 1]);
+		mFrameWidth = frames[0].width();
+		mPivotX = pivotX;
+		mPivotY = pivotY;
+	}
+
+	/**
+	 * Returns the name of the sprite, the name of the source file without the extension.
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * Returns the atlas bitmap the sprite is a region of.
+	 */
+	public Bitmap getAtlas() {
+		return mAtlas;
+	}
+
+	/**
+	 * Returns the region of the whole sprite, all frames and the padding between them, in the atlas. The rectangle must not be modified.
+	 */
+	public Rect getBounds() {
+		return mBounds;
+	}
+
+	/**
+	 * Returns the number of frames.
+	 */
+	public int getFrameCount() {
+		return mFrames.length;
+	}
+
+	/**
+	 * Returns the width of the first frame.
+	 */
+	public int getWidth() {
+		return mFrameWidth;
+	}
+
+	/**
+	 * Returns the height of the sprite.
+	 */
+	public int getHeight() {
+		return mBounds.height();
+	}
+
+	/**
+	 * Returns the X position of the pivot, relative to the left edge of a frame.
+	 */
+	public float getPivotX() {
+		return mPivotX;
+	}
+
+	/**
+	 * Returns the Y position of the pivot, relative to the top edge of a frame.
+	 */
+	public float getPivotY() {
+		return mPivotY;
+	}
+
+	/**
+	 * Sets the given rectangle to the region of a frame in the atlas.
+	 * @param frame the index of the frame
+	 * @param bounds the rectangle to be set
+	 */
+	public void getFrameBounds(final int frame, final Rect bounds) {
+		bounds.set(mFrames[frame]);
+	}
+}
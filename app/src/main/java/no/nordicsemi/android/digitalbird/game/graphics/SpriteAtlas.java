@@ -0,0 +1,228 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.util.DisplayMetrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The atlas of all game sprites, packed into pages at build time by the <code>packSprites</code> Gradle task. The sprites needed to draw the
+ * first frame and play the game are in the {@link #PAGE_ESSENTIAL essential} page, the ambient animations in the {@link #PAGE_AMBIENT ambient}
+ * one. Each page is a single bitmap, decoded when it's needed for the first time, so that loading the ambient animations does not delay
+ * the first frame.
+ * <p>
+ * The metadata file is a text file with one entry per line. Empty lines and lines starting with <code>#</code> are ignored. Sprites belong
+ * to the page declared above them. The bitmap of a page is stored in <code>sprites/&lt;name&gt;.png</code>.</p>
+ * <pre>
+ * page &lt;name&gt; &lt;width&gt; &lt;height&gt;
+ * sprite &lt;name&gt; &lt;x&gt; &lt;y&gt; &lt;frameWidth&gt; &lt;height&gt; &lt;frames&gt; &lt;frameStride&gt; &lt;pivotX&gt; &lt;pivotY&gt;
+ * </pre>
+ * <p>
+ * The frames of a sprite sheet are laid out horizontally, each in its own cell, the frame stride apart. Sprites and frames are separated
+ * by transparent padding.</p>
+ * <p>
+ * The sprites are drawn for the xxhdpi density. Each page is scaled to the screen density when decoded, and so are the regions. Every edge
+ * is scaled and rounded separately, so that the padding between neighbouring regions does not get lost.</p>
+ * <p>
+ * The atlas is thread safe. Requests made while a page is being decoded wait for the result, requests for other pages do not.</p>
+ */
+public class SpriteAtlas {
+	/** The page with the background, the bird and the pipes. */
+	public static final String PAGE_ESSENTIAL = "essential";
+	/** The page with the plane and the fireworks. */
+	public static final String PAGE_AMBIENT = "ambient";
+	/** The atlas metadata in the assets. */
+	public static final String ATLAS_METADATA = "sprites/atlas.txt";
+	/** The directory with the page bitmaps in the assets. */
+	private static final String PAGES_DIRECTORY = "sprites/";
+	/** The density the sprites are drawn for. */
+	private static final int SOURCE_DENSITY = DisplayMetrics.DENSITY_XXHIGH;
+
+	/** The region of a sprite in the page, as packed. */
+	private static class Entry {
+		private final String name;
+		private final int x, y, frameWidth, height;
+		private final int frameCount, frameStride;
+		private final float pivotX, pivotY;
+
+		private Entry(final String name, final int x, final int y, final int frameWidth, final int height, final int frameCount,
+					  final int frameStride, final float pivotX, final float pivotY) {
+			this.name = name;
+			this.x = x;
+			this.y = y;
+			this.frameWidth = frameWidth;
+			this.height = height;
+			this.frameCount = frameCount;
+			this.frameStride = frameStride;
+			this.pivotX = pivotX;
+			this.pivotY = pivotY;
+		}
+	}
+
+	/** A page of the atlas. The bitmap is decoded by the first thread that needs it, guarded by the page. */
+	private static class Page {
+		private final String name;
+		private final int width;
+		private final List<Entry> entries = new ArrayList<>();
+		private boolean decoded;
+
+		private Page(final String name, final int width) {
+			this.name = name;
+			this.width = width;
+		}
+	}
+
+	private final Resources mResources;
+	/** The pages, by the page name. Not modified after loading. */
+	private final Map<String, Page> mPages;
+	/** The page of each sprite, by the sprite name. Not modified after loading. */
+	private final Map<String, Page> mSpritePages;
+	/** The sprites of the decoded pages, by the name. Guarded by the map. */
+	private final Map<String, Sprite> mSprites = new HashMap<>();
+
+	private SpriteAtlas(final Resources resources, final Map<String, Page> pages, final Map<String, Page> spritePages) {
+		mResources = resources;
+		mPages = pages;
+		mSpritePages = spritePages;
+	}
+
+	/**
+	 * Reads the metadata of the atlas. The pages are not decoded yet.
+	 * @param resources application resources
+	 * @return the atlas
+	 * @throws IOException if the metadata could not be read
+	 */
+	public static SpriteAtlas load(final Resources resources) throws IOException {
+		final Map<String, Page> pages = new HashMap<>();
+		final Map<String, Page> spritePages = new HashMap<>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(resources.getAssets().open(ATLAS_METADATA), "UTF-8"));
+		try {
+			Page page = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				final String[] fields = line.split("\\s+");
+				if ("page".equals(fields[0]) && fields.length == 4) {
+					page = new Page(fields[1], Integer.parseInt(fields[2]));
+					pages.put(page.name, page);
+				} else if ("sprite".equals(fields[0]) && fields.length == 10 && page != null) {
+					page.entries.add(new Entry(fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+							Integer.parseInt(fields[5]), Integer.parseInt(fields[6]), Integer.parseInt(fields[7]),
+							Float.parseFloat(fields[8]), Float.parseFloat(fields[9])));
+					spritePages.put(fields[1], page);
+				} else {
+					throw new IOException("Invalid atlas entry: " + line);
+				}
+			}
+		} catch (final NumberFormatException e) {
+			throw new IOException("Invalid atlas metadata", e);
+		} finally {
+			reader.close();
+		}
+		return new SpriteAtlas(resources, pages, spritePages);
+	}
+
+	/**
+	 * Decodes the bitmap of the page, if not decoded yet.
+	 * @param name the name of the page, one of the PAGE_* constants
+	 * @throws IOException if the page could not be decoded
+	 * @throws IllegalArgumentException if there is no such page in the atlas
+	 */
+	public void decodePage(final String name) throws IOException {
+		final Page page = mPages.get(name);
+		if (page == null)
+			throw new IllegalArgumentException("No page in the atlas: " + name);
+		decodePage(page);
+	}
+
+	private void decodePage(final Page page) throws IOException {
+		synchronized (page) {
+			if (page.decoded)
+				return;
+
+			final BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inScaled = true;
+			options.inDensity = SOURCE_DENSITY;
+			options.inTargetDensity = mResources.getDisplayMetrics().densityDpi;
+
+			final String path = PAGES_DIRECTORY + page.name + ".png";
+			final Bitmap bitmap;
+			final InputStream bitmapStream = mResources.getAssets().open(path);
+			try {
+				bitmap = BitmapFactory.decodeStream(bitmapStream, null, options);
+			} finally {
+				bitmapStream.close();
+			}
+			if (bitmap == null)
+				throw new IOException("Invalid atlas bitmap: " + path);
+
+			// The bitmap has been scaled when decoded
+			final float scale = (float) bitmap.getWidth() / page.width;
+			synchronized (mSprites) {
+				for (final Entry entry : page.entries) {
+					final Rect[] frames = new Rect[entry.frameCount];
+					for (int i = 0; i < frames.length; ++i) {
+						final int left = entry.x + i * entry.frameStride;
+						frames[i] = new Rect(Math.round(left * scale), Math.round(entry.y * scale),
+								Math.round((left + entry.frameWidth) * scale), Math.round((entry.y + entry.height) * scale));
+					}
+					mSprites.put(entry.name, new Sprite(entry.name, bitmap, frames, entry.pivotX * scale, entry.pivotY * scale));
+				}
+			}
+			page.decoded = true;
+		}
+	}
+
+	/**
+	 * Returns the sprite with the given name, decoding its page if needed.
+	 * @param name the name of the sprite, the name of the source file without the extension
+	 * @return the sprite
+	 * @throws IOException if the page could not be decoded
+	 * @throws IllegalArgumentException if there is no such sprite in the atlas
+	 */
+	public Sprite getSprite(final String name) throws IOException {
+		final Page page = mSpritePages.get(name);
+		if (page == null)
+			throw new IllegalArgumentException("No sprite in the atlas: " + name);
+		decodePage(page);
+		synchronized (mSprites) {
+			return mSprites.get(name);
+		}
+	}
+}
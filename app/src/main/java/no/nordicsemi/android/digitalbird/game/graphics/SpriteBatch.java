@@ -0,0 +1,204 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+
+/**
+ * Collects sprite frames and bitmap regions drawn from the same bitmap and submits them with a single {@link Canvas#drawVertices} call,
+ * two triangles per region, textured by a shader of the bitmap. Besides the atlas pages, objects may batch regions of their own caches,
+ * e.g. the pipe columns or the bird rotations. A batch is flushed when a region of another bitmap is drawn, when it is full, and when
+ * {@link #flush()} is called.
+ * <p>
+ * The vertices are drawn with the canvas matrix and clip set when the batch is flushed, not when the sprites were added, and after anything
+ * drawn directly on the canvas in between. The batch must therefore be flushed before drawing directly, or transforming the canvas.
+ * Objects that rotate the canvas for their sprites should draw them directly instead.</p>
+ * <p>
+ * Hardware accelerated canvases do not support {@link Canvas#drawVertices} on all Android versions, so on those the batch is not used and
+ * sprites are drawn one by one, see {@link #isDrawing(Canvas)}.</p>
+ * <p>
+ * All arrays are preallocated, so nothing is allocated when drawing. A batch must be used by a single thread.</p>
+ */
+public class SpriteBatch {
+	/** The maximum number of sprite frames submitted with a single call. */
+	private static final int MAX_SPRITES = 64;
+	/** The maximum number of bitmaps whose shaders are kept: the atlas pages and the caches of the objects. */
+	private static final int MAX_BITMAPS = 8;
+
+	/** The corners of frames: top left, top right, bottom right and bottom left, X and Y each. */
+	private final float[] mVertices = new float[MAX_SPRITES * 8];
+	/** The corners of frames in the bitmap, in the same order. */
+	private final float[] mTextureCoordinates = new float[MAX_SPRITES * 8];
+	/** Two triangles for each frame. The indices do not change. */
+	private final short[] mIndices = new short[MAX_SPRITES * 6];
+	private final Rect mSource = new Rect();
+	private final Paint mPaint = new Paint();
+	/** The canvas frames are drawn on, or null if the batch is not used. */
+	private Canvas mCanvas;
+	/** The bitmap of the frames in the batch. */
+	private Bitmap mBitmap;
+	// The shaders created for the bitmaps, and the bitmaps
+	private final Bitmap[] mShaderBitmaps = new Bitmap[MAX_BITMAPS];
+	private final BitmapShader[] mShaders = new BitmapShader[MAX_BITMAPS];
+	/** The slot replaced next when all slots are used, e.g. after object caches have been recreated. */
+	private int mNextShaderSlot;
+	/** The number of frames in the batch. */
+	private int mCount;
+
+	public SpriteBatch() {
+		final short[] indices = mIndices;
+		for (int i = 0; i < MAX_SPRITES; ++i) {
+			final short corner = (short) (i * 4);
+			indices[i * 6] = corner;
+			indices[i * 6 + 1] = (short) (corner + 1);
+			indices[i * 6 + 2] = (short) (corner + 2);
+			indices[i * 6 + 3] = corner;
+			indices[i * 6 + 4] = (short) (corner + 2);
+			indices[i * 6 + 5] = (short) (corner + 3);
+		}
+	}
+
+	/**
+	 * Returns the shader of the bitmap. The shader is created once for each bitmap, so switching bitmaps does not allocate.
+	 */
+	private BitmapShader getShader(final Bitmap bitmap) {
+		final Bitmap[] bitmaps = mShaderBitmaps;
+		int slot = -1;
+		for (int i = 0; i < MAX_BITMAPS; ++i) {
+			if (bitmaps[i] == bitmap)
+				return mShaders[i];
+			if (bitmaps[i] == null) {
+				slot = i;
+				break;
+			}
+		}
+		if (slot == -1) {
+			// Caches replaced by the objects are released with their slot
+			slot = mNextShaderSlot;
+			mNextShaderSlot = (slot + 1) % MAX_BITMAPS;
+		}
+		final BitmapShader shader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+		bitmaps[slot] = bitmap;
+		mShaders[slot] = shader;
+		return shader;
+	}
+
+	/**
+	 * Starts batching sprites drawn on the given canvas. The batch is not used if the canvas is hardware accelerated.
+	 * @param canvas the canvas of the frame
+	 */
+	public void begin(final Canvas canvas) {
+		mCount = 0;
+		mCanvas = canvas.isHardwareAccelerated() ? null : canvas;
+	}
+
+	/**
+	 * Returns whether sprites drawn on the given canvas should be added to this batch.
+	 * @param canvas the canvas a sprite is to be drawn on
+	 * @return true if the batch has been started for the canvas
+	 */
+	public boolean isDrawing(final Canvas canvas) {
+		return mCanvas != null && mCanvas == canvas;
+	}
+
+	/**
+	 * Adds a frame of the sprite to the batch, unscaled. The batch is flushed first if the sprite is in another bitmap, or if it's full.
+	 * @param sprite the sprite
+	 * @param frame the index of the frame
+	 * @param x the X position of the left edge of the frame
+	 * @param y the Y position of the top edge of the frame
+	 */
+	public void draw(final Sprite sprite, final int frame, final float x, final float y) {
+		final Rect source = mSource;
+		sprite.getFrameBounds(frame, source);
+		draw(sprite.getAtlas(), source, x, y);
+	}
+
+	/**
+	 * Adds a region of the bitmap to the batch, unscaled. The batch is flushed first if the region is in another bitmap, or if it's full.
+	 * @param bitmap the bitmap, e.g. a cache of the object. It must not be recycled before the batch is flushed
+	 * @param source the region of the bitmap
+	 * @param x the X position of the left edge of the region
+	 * @param y the Y position of the top edge of the region
+	 */
+	public void draw(final Bitmap bitmap, final Rect source, final float x, final float y) {
+		if (bitmap != mBitmap) {
+			flush();
+			mPaint.setShader(getShader(bitmap));
+			mBitmap = bitmap;
+		} else if (mCount == MAX_SPRITES) {
+			flush();
+		}
+
+		final float right = x + source.width();
+		final float bottom = y + source.height();
+
+		final int offset = mCount * 8;
+		final float[] vertices = mVertices;
+		vertices[offset] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = right;
+		vertices[offset + 3] = y;
+		vertices[offset + 4] = right;
+		vertices[offset + 5] = bottom;
+		vertices[offset + 6] = x;
+		vertices[offset + 7] = bottom;
+
+		final float[] coordinates = mTextureCoordinates;
+		coordinates[offset] = source.left;
+		coordinates[offset + 1] = source.top;
+		coordinates[offset + 2] = source.right;
+		coordinates[offset + 3] = source.top;
+		coordinates[offset + 4] = source.right;
+		coordinates[offset + 5] = source.bottom;
+		coordinates[offset + 6] = source.left;
+		coordinates[offset + 7] = source.bottom;
+		mCount++;
+	}
+
+	/**
+	 * Draws the frames collected so far with a single call and empties the batch.
+	 */
+	public void flush() {
+		final int count = mCount;
+		if (count == 0)
+			return;
+		mCount = 0;
+		mCanvas.drawVertices(Canvas.VertexMode.TRIANGLES, count * 8, mVertices, 0, mTextureCoordinates, 0, null, 0, mIndices, 0, count * 6, mPaint);
+	}
+
+	/**
+	 * Flushes the batch and stops batching. Sprites are drawn one by one until the batch is started again.
+	 */
+	public void end() {
+		if (mCanvas != null)
+			flush();
+		mCanvas = null;
+	}
+}
@@ -0,0 +1,134 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registry of sprites shared by game objects. All sprites are packed into the pages of the {@link SpriteAtlas}. Each page is decoded only
+ * once, on the first request for any of its sprites or by {@link #decodePage(String)}, no matter how many objects use it.
+ * <p>
+ * Sprites are drawn from the atlas bitmap using the regions of the {@link Sprite}s. A shader can't repeat a region of a bitmap, so sprites
+ * used for tiling may be obtained as standalone bitmaps, cut from the atlas once and shared afterwards.</p>
+ * <p>
+ * Returned bitmaps are immutable and must not be recycled by the objects. Objects may only keep their own position and transformation
+ * state, e.g. a shader with a local matrix, that uses the shared bitmap.</p>
+ * <p>
+ * The registry also holds the {@link SpriteBatch} shared by the objects drawing from the atlas. The batch is used only by the renderer
+ * thread.</p>
+ * <p>
+ * The registry is thread safe. Requests made while a page is being decoded wait for the result, requests for sprites in other pages do not.</p>
+ */
+public class SpriteRegistry {
+	private final Resources mResources;
+	/** The atlas metadata, or null if not loaded yet. Guarded by the registry. */
+	private SpriteAtlas mAtlas;
+	/** Standalone bitmaps cut from the atlas, by the sprite name. */
+	private final Map<String, Bitmap> mBitmaps = new HashMap<>();
+	private final SpriteBatch mSpriteBatch = new SpriteBatch();
+
+	public SpriteRegistry(final Resources resources) {
+		mResources = resources;
+	}
+
+	/**
+	 * Returns the application resources.
+	 */
+	public Resources getResources() {
+		return mResources;
+	}
+
+	/**
+	 * Returns the batch shared by the objects drawing sprites from this registry.
+	 */
+	public SpriteBatch getSpriteBatch() {
+		return mSpriteBatch;
+	}
+
+	/**
+	 * Returns the sprite with the given name. The page of the atlas containing it is decoded on the first call.
+	 * @param name the name of the sprite, the name of the source file without the extension
+	 * @return the sprite
+	 */
+	public Sprite getSprite(final String name) {
+		try {
+			return getAtlas().getSprite(name);
+		} catch (final IOException e) {
+			// The atlas is generated by the build, so this is not expected to happen
+			throw new IllegalStateException("The sprite atlas could not be loaded", e);
+		}
+	}
+
+	/**
+	 * Decodes a page of the atlas, if not decoded yet. This allows a loader task to decode the page at its own priority, before the objects
+	 * using it are created.
+	 * @param page the name of the page, one of the SpriteAtlas.PAGE_* constants
+	 */
+	public void decodePage(final String page) {
+		try {
+			getAtlas().decodePage(page);
+		} catch (final IOException e) {
+			throw new IllegalStateException("The sprite atlas could not be loaded", e);
+		}
+	}
+
+	/**
+	 * Returns the sprite with the given name as a standalone bitmap, e.g. for a repeating shader. The bitmap is cut from the atlas on the
+	 * first call and shared afterwards.
+	 * @param name the name of the sprite, the name of the source file without the extension
+	 * @return the immutable, shared bitmap
+	 */
+	public Bitmap getBitmap(final String name) {
+		final Sprite sprite = getSprite(name);
+		synchronized (mBitmaps) {
+			Bitmap bitmap = mBitmaps.get(name);
+			if (bitmap == null) {
+				final Rect bounds = sprite.getBounds();
+				bitmap = Bitmap.createBitmap(sprite.getAtlas(), bounds.left, bounds.top, bounds.width(), bounds.height());
+				mBitmaps.put(name, bitmap);
+			}
+			return bitmap;
+		}
+	}
+
+	/**
+	 * Returns the atlas, reading its metadata if needed. The pages are decoded separately.
+	 */
+	private synchronized SpriteAtlas getAtlas() {
+		if (mAtlas == null) {
+			try {
+				mAtlas = SpriteAtlas.load(mResources);
+			} catch (final IOException e) {
+				// The atlas is generated by the build, so this is not expected to happen
+				throw new IllegalStateException("The sprite atlas could not be loaded", e);
+			}
+		}
+		return mAtlas;
+	}
+}
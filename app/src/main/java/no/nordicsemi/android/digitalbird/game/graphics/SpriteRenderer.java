@@ -0,0 +1,105 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Draws sprite frames straight from the {@link SpriteAtlas} bitmap, selecting the frame with the source rectangle of
+ * {@link Canvas#drawBitmap(android.graphics.Bitmap, Rect, RectF, Paint)}. Unlike drawing a rectangle with a {@link android.graphics.BitmapShader},
+ * this requires no local matrix to be updated for each frame. Shaders should only be used for sprites that are tiled.
+ * <p>
+ * A renderer may add sprites to a shared {@link SpriteBatch} instead, while the batch is drawing on the same canvas.</p>
+ * <p>
+ * The rectangles are preallocated, so nothing is allocated when drawing. A renderer must be used by a single thread.</p>
+ */
+public class SpriteRenderer {
+	private final Rect mSource = new Rect();
+	private final RectF mDestination = new RectF();
+	private final Paint mPaint;
+	private final SpriteBatch mBatch;
+
+	/**
+	 * Creates a renderer that copies pixels without filtering. Use it for sprites drawn unscaled and unrotated.
+	 */
+	public SpriteRenderer() {
+		this((Paint) null);
+	}
+
+	/**
+	 * Creates a renderer that draws sprites with the given paint, e.g. with bitmap filtering for sprites drawn on a rotated canvas.
+	 * @param paint the paint, or null
+	 */
+	public SpriteRenderer(final Paint paint) {
+		mPaint = paint;
+		mBatch = null;
+	}
+
+	/**
+	 * Creates a renderer that adds sprites to the batch when it's drawing on the canvas, and copies pixels without filtering otherwise.
+	 * Use it for sprites drawn unscaled and unrotated.
+	 * @param batch the batch shared by the objects
+	 */
+	public SpriteRenderer(final SpriteBatch batch) {
+		mPaint = null;
+		mBatch = batch;
+	}
+
+	/**
+	 * Draws a frame of the sprite, unscaled.
+	 * @param canvas the canvas to draw on
+	 * @param sprite the sprite
+	 * @param frame the index of the frame
+	 * @param x the X position of the left edge of the frame
+	 * @param y the Y position of the top edge of the frame
+	 */
+	public void draw(final Canvas canvas, final Sprite sprite, final int frame, final float x, final float y) {
+		final Rect source = mSource;
+		sprite.getFrameBounds(frame, source);
+		draw(canvas, sprite.getAtlas(), source, x, y);
+	}
+
+	/**
+	 * Draws a region of the bitmap, unscaled, e.g. from a cache of the object.
+	 * @param canvas the canvas to draw on
+	 * @param bitmap the bitmap
+	 * @param source the region of the bitmap
+	 * @param x the X position of the left edge of the region
+	 * @param y the Y position of the top edge of the region
+	 */
+	public void draw(final Canvas canvas, final Bitmap bitmap, final Rect source, final float x, final float y) {
+		final SpriteBatch batch = mBatch;
+		if (batch != null && batch.isDrawing(canvas)) {
+			batch.draw(bitmap, source, x, y);
+			return;
+		}
+
+		mDestination.set(x, y, x + source.width(), y + source.height());
+		canvas.drawBitmap(bitmap, source, mDestination, mPaint);
+	}
+}
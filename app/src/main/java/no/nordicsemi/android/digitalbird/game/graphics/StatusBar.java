@@ -25,9 +25,13 @@ package no.nordicsemi.android.digitalbird.game.graphics;
 import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.TypedValue;
 
-public class StatusBar implements GameObject {
+/**
+ * The darker status bar. The status bar does not change, so it has no state to be written to a snapshot.
+ */
+public class StatusBar implements GameObject<Void> {
 	private static final int STATUS_BAR_ALPHA = 0x2B;
 	private Paint mStatusBarPaint;
 	private int mStatusBarHeight;
@@ -51,7 +55,22 @@ public class StatusBar implements GameObject {
 	}
 
 	@Override
-	public void draw(final Canvas canvas) {
+	public void saveState() {
+		// There is nothing to be interpolated
+	}
+
+	@Override
+	public void writeSnapshot(final Void snapshot) {
+		// There is no state
+	}
+
+	@Override
+	public void getBounds(final Void snapshot, final Rect bounds) {
+		bounds.set(0, 0, mWidth, mStatusBarHeight);
+	}
+
+	@Override
+	public void draw(final Canvas canvas, final Void snapshot, final float interpolation) {
 		// Draw the darker status bar above all
 		canvas.drawRect(0, 0, mWidth, mStatusBarHeight, mStatusBarPaint);
 	}
@@ -0,0 +1,128 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.stats;
+
+/**
+ * Collects frame timing statistics from the renderer. The time of each phase of a frame is recorded in a separate histogram.
+ * Recording is allocation-free and each histogram must be recorded from a single thread at a time. When frames are pipelined, the
+ * {@link #PHASE_CALCULATE_FRAME} phase is recorded by the simulation thread, everything else by the renderer thread.
+ * Use {@link #getFrameStats()} to obtain a snapshot from any thread.
+ */
+public class FrameProfiler {
+	/** Locking the canvas. This includes waiting for a free buffer. */
+	public static final int PHASE_LOCK_CANVAS = 0;
+	/** Calculating all simulation steps of a frame. */
+	public static final int PHASE_CALCULATE_FRAME = 1;
+	/** Drawing the frame on the canvas. */
+	public static final int PHASE_DRAW_FRAME = 2;
+	/** Unlocking and posting the canvas. */
+	public static final int PHASE_UNLOCK_CANVAS_AND_POST = 3;
+	private static final int PHASE_COUNT = 4;
+
+	private final LatencyHistogram[] mHistograms;
+	/** The time from the start of the calculation of a frame until it has been posted. */
+	private final LatencyHistogram mLatency = new LatencyHistogram();
+	private volatile int mFrameCount;
+	private volatile int mDroppedFrameCount;
+	/** Number of pixels redrawn in all frames. */
+	private volatile long mTouchedPixels;
+	/** Number of pixels of all frames, whether they were redrawn or not. */
+	private volatile long mTotalPixels;
+	/** Number of objects drawn in all frames. */
+	private volatile long mDrawnObjects;
+	/** Number of objects skipped in all frames, as they were outside of the redrawn area. */
+	private volatile long mCulledObjects;
+	/** Number of frames the objects were counted in. */
+	private volatile int mCulledFrameCount;
+
+	public FrameProfiler() {
+		mHistograms = new LatencyHistogram[PHASE_COUNT];
+		for (int i = 0; i < PHASE_COUNT; ++i)
+			mHistograms[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * Records the duration of a frame phase.
+	 * @param phase one of the PHASE_* constants
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void recordPhase(final int phase, final long nanos) {
+		mHistograms[phase].record(nanos);
+	}
+
+	/**
+	 * Records the latency of a frame, from the start of its calculation until it has been posted.
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void recordLatency(final long nanos) {
+		mLatency.record(nanos);
+	}
+
+	/**
+	 * Counts a drawn frame.
+	 * @param droppedFrames number of frames that should have been drawn since the previous one, but were not
+	 */
+	public void recordFrame(final int droppedFrames) {
+		mFrameCount = mFrameCount + 1;
+		if (droppedFrames > 0)
+			mDroppedFrameCount = mDroppedFrameCount + droppedFrames;
+	}
+
+	/**
+	 * Records how much of a frame has been redrawn.
+	 * @param touchedPixels number of pixels in the region that has been redrawn
+	 * @param totalPixels number of pixels of the whole surface
+	 */
+	public void recordCoverage(final long touchedPixels, final long totalPixels) {
+		mTouchedPixels = mTouchedPixels + touchedPixels;
+		mTotalPixels = mTotalPixels + totalPixels;
+	}
+
+	/**
+	 * Records how many objects of a frame have been drawn, and how many skipped as they were outside of the redrawn area.
+	 * @param drawnObjects number of objects drawn
+	 * @param culledObjects number of objects skipped
+	 */
+	public void recordCulling(final int drawnObjects, final int culledObjects) {
+		mDrawnObjects = mDrawnObjects + drawnObjects;
+		mCulledObjects = mCulledObjects + culledObjects;
+		mCulledFrameCount = mCulledFrameCount + 1;
+	}
+
+	/**
+	 * Returns a snapshot of the statistics collected so far.
+	 */
+	public FrameStats getFrameStats() {
+		final long totalPixels = mTotalPixels;
+		final float coverage = totalPixels > 0 ? (float) mTouchedPixels / totalPixels : 1.0f;
+		final int culledFrameCount = mCulledFrameCount;
+		final float drawnObjects = culledFrameCount > 0 ? (float) mDrawnObjects / culledFrameCount : 0.0f;
+		final float culledObjects = culledFrameCount > 0 ? (float) mCulledObjects / culledFrameCount : 0.0f;
+		return new FrameStats(mFrameCount, mDroppedFrameCount, coverage, drawnObjects, culledObjects,
+				mHistograms[PHASE_LOCK_CANVAS].getSummary(),
+				mHistograms[PHASE_CALCULATE_FRAME].getSummary(),
+				mHistograms[PHASE_DRAW_FRAME].getSummary(),
+				mHistograms[PHASE_UNLOCK_CANVAS_AND_POST].getSummary(),
+				mLatency.getSummary());
+	}
+}
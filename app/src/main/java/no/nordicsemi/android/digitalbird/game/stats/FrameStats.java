@@ -0,0 +1,75 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.stats;
+
+/**
+ * An immutable snapshot of frame timing statistics.
+ * @see FrameProfiler
+ */
+public class FrameStats {
+	/** Number of frames drawn. */
+	public final int frameCount;
+	/** Number of display refreshes that passed without a new frame. */
+	public final int droppedFrameCount;
+	/** The average fraction of the surface pixels redrawn per frame, 1.0 if every frame has been redrawn completely. */
+	public final float averageCoverage;
+	/** The average number of moving objects drawn per frame. */
+	public final float averageDrawnObjects;
+	/** The average number of moving objects skipped per frame, as they were outside of the redrawn area. */
+	public final float averageCulledObjects;
+	/** Time spent locking the canvas. */
+	public final LatencyHistogram.Summary lockCanvas;
+	/** Time spent calculating the simulation steps of a frame. */
+	public final LatencyHistogram.Summary calculateFrame;
+	/** Time spent drawing a frame. */
+	public final LatencyHistogram.Summary drawFrame;
+	/** Time spent unlocking and posting the canvas. */
+	public final LatencyHistogram.Summary unlockCanvasAndPost;
+	/** Time from the start of the calculation of a frame until it has been posted. */
+	public final LatencyHistogram.Summary latency;
+
+	/* package */ FrameStats(final int frameCount, final int droppedFrameCount, final float averageCoverage, final float averageDrawnObjects,
+			final float averageCulledObjects, final LatencyHistogram.Summary lockCanvas, final LatencyHistogram.Summary calculateFrame, final LatencyHistogram.Summary drawFrame, final LatencyHistogram.Summary unlockCanvasAndPost, final LatencyHistogram.Summary latency) {
+		this.frameCount = frameCount;
+		this.droppedFrameCount = droppedFrameCount;
+		this.averageCoverage = averageCoverage;
+		this.averageDrawnObjects = averageDrawnObjects;
+		this.averageCulledObjects = averageCulledObjects;
+		this.lockCanvas = lockCanvas;
+		this.calculateFrame = calculateFrame;
+		this.drawFrame = drawFrame;
+		this.unlockCanvasAndPost = unlockCanvasAndPost;
+		this.latency = latency;
+	}
+
+	@Override
+	public String toString() {
+		return "frames=" + frameCount + ", dropped=" + droppedFrameCount + ", coverage=" + averageCoverage +
+				", drawn=" + averageDrawnObjects + ", culled=" + averageCulledObjects +
+				"\n lockCanvas: " + lockCanvas +
+				"\n calculateFrame: " + calculateFrame +
+				"\n drawFrame: " + drawFrame +
+				"\n unlockCanvasAndPost: " + unlockCanvasAndPost +
+				"\n latency: " + latency;
+	}
+}
@@ -0,0 +1,149 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.stats;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A fixed-size, log-linear histogram of latencies. Values are recorded in microseconds. Each power of 2 range is split into
+ * {@link #SUB_BUCKET_COUNT} linear buckets, which gives a relative error below 12.5% for values from 1 &micro;s up to 16 s.
+ * <p>
+ * Recording values does not allocate any memory. The histogram may be written only from a single thread, but it may be read from any thread.
+ * Values read while recording is in progress are approximate.</p>
+ */
+public class LatencyHistogram {
+	/** Number of bits of the value used to select a linear bucket within a power of 2 range. */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/** The highest power of 2 of a value that can be recorded. Bigger values are recorded in the last bucket. */
+	private static final int MAX_EXPONENT = 23;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+	private final AtomicIntegerArray mCounts = new AtomicIntegerArray(BUCKET_COUNT);
+	private volatile int mCount;
+	private volatile long mMax;
+
+	/**
+	 * Records a single value.
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(final long nanos) {
+		final long micros = nanos / 1000L;
+		final int index = getBucketIndex(micros);
+
+		// There is only one writer, so the values may be simply incremented without a CAS.
+		mCounts.lazySet(index, mCounts.get(index) + 1);
+		mCount = mCount + 1;
+		if (micros > mMax)
+			mMax = micros;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the highest recorded value in microseconds.
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * Creates an immutable summary of the histogram.
+	 * @return the summary
+	 */
+	public Summary getSummary() {
+		final int[] counts = new int[BUCKET_COUNT];
+		int total = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			counts[i] = mCounts.get(i);
+			total += counts[i];
+		}
+		final long max = mMax;
+		return new Summary(total, getValueAtPercentile(counts, total, 50, max), getValueAtPercentile(counts, total, 90, max),
+				getValueAtPercentile(counts, total, 99, max), max);
+	}
+
+	private static long getValueAtPercentile(final int[] counts, final int total, final int percentile, final long max) {
+		if (total == 0)
+			return 0;
+
+		// The rank of the value, rounded up
+		final long rank = ((long) total * percentile + 99) / 100;
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			cumulative += counts[i];
+			if (cumulative >= rank)
+				return Math.min(getBucketUpperBound(i), max);
+		}
+		return max;
+	}
+
+	private static int getBucketIndex(final long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		if (value >= 1L << (MAX_EXPONENT + 1))
+			return BUCKET_COUNT - 1;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long getBucketUpperBound(final int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		final int subBucket = index % SUB_BUCKET_COUNT;
+		return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * A summary of the latency histogram. All values are in microseconds.
+	 */
+	public static class Summary {
+		public final int count;
+		public final long p50;
+		public final long p90;
+		public final long p99;
+		public final long max;
+
+		private Summary(final int count, final long p50, final long p90, final long p99, final long max) {
+			this.count = count;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		@Override
+		public String toString() {
+			return "p50=" + p50 + "us, p90=" + p90 + "us, p99=" + p99 + "us, max=" + max + "us (" + count + " samples)";
+		}
+	}
+}
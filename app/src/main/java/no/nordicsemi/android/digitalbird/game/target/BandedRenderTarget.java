@@ -0,0 +1,293 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+
+package no.nordicsemi.android.digitalbird.game.target;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * The render target that rasterizes frames on multiple cores. The frame is split into horizontal bands, each drawn into its own offscreen
+ * bitmap by its own thread, and the bands are then copied onto the canvas of the wrapped target.
+ * <p>
+ * The game objects keep preallocated state used only when drawing, so they may not be drawn from multiple threads. Instead, the frame is
+ * recorded into a {@link Picture} on the renderer thread, which is cheap, and the picture is played back by all band threads, each with
+ * the canvas translated and clipped to its band. The renderer thread draws the first band itself. Playing a picture back on multiple threads
+ * at once is safe only since Android Marshmallow, so the target may be used only if {@link #isSupported()}.</p>
+ * <p>
+ * The band bitmaps are kept between frames, together they always hold the whole last frame. A frame with a dirty region is played back
+ * only into the bands it touches, clipped to the region, and only those bands are copied to the wrapped target. The first frame after the
+ * bands have been created, and the first one after the wrapped target could not be locked, are drawn and copied as a whole, whatever the
+ * dirty region.</p>
+ * <p>
+ * The wrapped target is locked only after all bands have been drawn, so its locking time is measured as part of posting the frame, together
+ * with the rasterization. The time of drawing the frame is the time of recording it.</p>
+ * <p>
+ * Band threads are started with the target and must be stopped with {@link #release()}. Drawing frames does not allocate any objects, unless
+ * the size has changed.</p>
+ */
+public class BandedRenderTarget implements RenderTarget {
+	private static final String TAG = "BandedRenderTarget";
+
+	/** A horizontal band of the frame and the bitmap it is drawn into. */
+	private static class Band {
+		private final Rect bounds = new Rect();
+		private Bitmap bitmap;
+		private Canvas canvas;
+	}
+
+	private final RenderTarget mTarget;
+	private final Band[] mBands;
+	/** The threads drawing the bands, except the first one that is drawn by the renderer thread. */
+	private final BandThread[] mThreads;
+	private final Picture mPicture = new Picture();
+	/** The region of the frame being drawn, valid if {@link #mDirtyValid} is set. */
+	private final Rect mDirty = new Rect();
+	private boolean mDirtyValid;
+	/**
+	 * Flag set when the bands do not hold the whole last frame, as they have just been created, or when the last frame could not be copied
+	 * to the wrapped target. The next frame is drawn and copied as a whole.
+	 */
+	private boolean mTargetStale;
+	/** The frame size set by the game. */
+	private volatile int mWidth, mHeight;
+	/** The frame size the bands have been created for. Used only by the renderer thread. */
+	private int mBandsWidth, mBandsHeight;
+
+	private final Object mLock = new Object();
+	/** The number of the frame being drawn. Band threads draw each frame once. Guarded by mLock. */
+	private int mFrameNumber;
+	/** The number of band threads that have not drawn the current frame yet. Guarded by mLock. */
+	private int mPendingBandCount;
+	/** Guarded by mLock. */
+	private boolean mStopped;
+
+	/**
+	 * Creates the target and starts the band threads.
+	 * @param target the target frames are copied to
+	 * @param bandCount the number of bands, each drawn on a separate thread
+	 */
+	public BandedRenderTarget(final RenderTarget target, final int bandCount) {
+		if (bandCount < 1)
+			throw new IllegalArgumentException("At least one band is required");
+		mTarget = target;
+		mBands = new Band[bandCount];
+		for (int i = 0; i < bandCount; ++i)
+			mBands[i] = new Band();
+		mThreads = new BandThread[bandCount - 1];
+		for (int i = 0; i < mThreads.length; ++i) {
+			mThreads[i] = new BandThread(mBands[i + 1], i + 1);
+			mThreads[i].start();
+		}
+	}
+
+	/**
+	 * Returns whether frames may be rasterized in bands on this device. Older versions of Android may not play a picture back on multiple
+	 * threads at once.
+	 */
+	public static boolean isSupported() {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+	}
+
+	/**
+	 * Returns the number of bands the frame is split into.
+	 */
+	public int getBandCount() {
+		return mBands.length;
+	}
+
+	/**
+	 * Sets the size of the frames. The bands are created again before the next frame. Until the size is set, the target is not ready.
+	 * @param width the frame width
+	 * @param height the frame height
+	 */
+	public void setSize(final int width, final int height) {
+		synchronized (mLock) {
+			mWidth = width;
+			mHeight = height;
+		}
+	}
+
+	/**
+	 * Stops the band threads and waits until they finish. The target may not be used afterwards.
+	 */
+	public void release() {
+		synchronized (mLock) {
+			mStopped = true;
+			mLock.notifyAll();
+		}
+
+		for (final BandThread thread : mThreads) {
+			boolean retry = true;
+			while (retry) {
+				try {
+					thread.join();
+					retry = false;
+				} catch (final InterruptedException e) {
+					Log.w(TAG, "Stopping the band thread interrupted", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Canvas lockCanvas(final Rect dirty) {
+		final int width, height;
+		synchronized (mLock) {
+			width = mWidth;
+			height = mHeight;
+		}
+		if (width <= 0 || height <= 0)
+			return null;
+		if (width != mBandsWidth || height != mBandsHeight) {
+			createBands(width, height);
+			mTargetStale = true;
+		}
+
+		// New bands are empty, so the frame is drawn into all of them, whatever the dirty region
+		mDirtyValid = dirty != null && !mTargetStale;
+		if (mDirtyValid)
+			mDirty.set(dirty);
+
+		final Canvas canvas = mPicture.beginRecording(width, height);
+		canvas.save();
+		if (mDirtyValid)
+			canvas.clipRect(dirty);
+		return canvas;
+	}
+
+	@Override
+	public void unlockCanvasAndPost(final Canvas canvas) {
+		canvas.restore();
+		mPicture.endRecording();
+
+		// Let the band threads play the frame back, and draw the first band meanwhile
+		synchronized (mLock) {
+			mPendingBandCount = mThreads.length;
+			mFrameNumber++;
+			mLock.notifyAll();
+		}
+		drawBand(mBands[0]);
+		synchronized (mLock) {
+			while (mPendingBandCount > 0 && !mStopped) {
+				try {
+					mLock.wait();
+				} catch (final InterruptedException e) {
+					Log.w(TAG, "Waiting for bands interrupted", e);
+				}
+			}
+		}
+
+		// The target may extend the dirty region. The bands hold the whole frame, so any region may be copied.
+		final boolean copyAll = !mDirtyValid;
+		final Canvas targetCanvas = mTarget.lockCanvas(copyAll ? null : mDirty);
+		if (targetCanvas == null) {
+			mTargetStale = true;
+			return;
+		}
+		mTargetStale = false;
+		for (final Band band : mBands) {
+			if (copyAll || Rect.intersects(mDirty, band.bounds))
+				targetCanvas.drawBitmap(band.bitmap, 0, band.bounds.top, null);
+		}
+		mTarget.unlockCanvasAndPost(targetCanvas);
+	}
+
+	/**
+	 * Creates band bitmaps for the given frame size. The band threads are idle, as no frame is being drawn.
+	 */
+	private void createBands(final int width, final int height) {
+		final Band[] bands = mBands;
+		final int bandHeight = (height + bands.length - 1) / bands.length;
+		for (int i = 0; i < bands.length; ++i) {
+			final Band band = bands[i];
+			final int top = Math.min(i * bandHeight, height);
+			final int bottom = Math.min(top + bandHeight, height);
+			band.bounds.set(0, top, width, bottom);
+			if (band.bitmap != null)
+				band.bitmap.recycle();
+			band.bitmap = Bitmap.createBitmap(width, Math.max(bottom - top, 1), Bitmap.Config.ARGB_8888);
+			band.canvas = new Canvas(band.bitmap);
+		}
+		mBandsWidth = width;
+		mBandsHeight = height;
+	}
+
+	/**
+	 * Plays the recorded frame back into the band, if the band is inside the region being drawn.
+	 */
+	private void drawBand(final Band band) {
+		if (mDirtyValid && !Rect.intersects(mDirty, band.bounds))
+			return;
+
+		final Canvas canvas = band.canvas;
+		canvas.save();
+		canvas.translate(0, -band.bounds.top);
+		if (mDirtyValid)
+			canvas.clipRect(mDirty);
+		mPicture.draw(canvas);
+		canvas.restore();
+	}
+
+	/**
+	 * The thread that draws a single band of each frame.
+	 */
+	private class BandThread extends Thread {
+		private final Band mBand;
+
+		private BandThread(final Band band, final int index) {
+			super(TAG + index);
+			mBand = band;
+		}
+
+		@Override
+		public void run() {
+			int lastFrameNumber = 0;
+			while (true) {
+				synchronized (mLock) {
+					while (mFrameNumber == lastFrameNumber && !mStopped) {
+						try {
+							mLock.wait();
+						} catch (final InterruptedException e) {
+							Log.w(TAG, "Band thread interrupted", e);
+						}
+					}
+					if (mStopped)
+						return;
+					lastFrameNumber = mFrameNumber;
+				}
+
+				drawBand(mBand);
+
+				synchronized (mLock) {
+					if (--mPendingBandCount == 0)
+						mLock.notifyAll();
+				}
+			}
+		}
+	}
+}
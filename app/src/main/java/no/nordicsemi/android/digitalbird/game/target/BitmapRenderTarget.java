@@ -0,0 +1,77 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.target;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * The render target that draws frames into an offscreen bitmap. All frames are drawn into the same bitmap, so the content outside of
+ * a dirty region is always preserved. This target rasterizes the frames exactly as the surface would, without displaying them.
+ */
+public class BitmapRenderTarget implements RenderTarget {
+	private final Bitmap mBitmap;
+	private final Canvas mCanvas;
+	/** Number of frames posted. */
+	private volatile int mFrameCount;
+
+	/**
+	 * Creates the target with a new bitmap.
+	 * @param width the bitmap width
+	 * @param height the bitmap height
+	 */
+	public BitmapRenderTarget(final int width, final int height) {
+		mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		mCanvas = new Canvas(mBitmap);
+	}
+
+	/**
+	 * Returns the bitmap frames are drawn into. The bitmap should not be read while the game is running.
+	 */
+	public Bitmap getBitmap() {
+		return mBitmap;
+	}
+
+	/**
+	 * Returns the number of frames posted.
+	 */
+	public int getFrameCount() {
+		return mFrameCount;
+	}
+
+	@Override
+	public Canvas lockCanvas(final Rect dirty) {
+		final Canvas canvas = mCanvas;
+		canvas.save();
+		if (dirty != null)
+			canvas.clipRect(dirty);
+		return canvas;
+	}
+
+	@Override
+	public void unlockCanvasAndPost(final Canvas canvas) {
+		canvas.restore();
+		mFrameCount = mFrameCount + 1;
+	}
+}
@@ -0,0 +1,93 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.target;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+
+/**
+ * The render target that does not rasterize frames. By default all drawing commands are discarded, so that the cost of the game logic can be
+ * measured without the cost of drawing. When recording is enabled, each frame is recorded into a {@link Picture} instead, which may be
+ * inspected or drawn elsewhere.
+ */
+public class RecordingRenderTarget implements RenderTarget {
+	private final int mWidth;
+	private final int mHeight;
+	/** A canvas without a bitmap. Drawing on it does nothing. */
+	private final Canvas mNullCanvas = new Canvas();
+	/** The picture the last frame has been recorded into. */
+	private final Picture mPicture = new Picture();
+	private volatile boolean mRecording;
+	/** Number of frames posted. */
+	private volatile int mFrameCount;
+
+	/**
+	 * Creates the target.
+	 * @param width the frame width
+	 * @param height the frame height
+	 */
+	public RecordingRenderTarget(final int width, final int height) {
+		mWidth = width;
+		mHeight = height;
+	}
+
+	/**
+	 * Enables or disables recording. When disabled, frames are discarded.
+	 * @param recording true to record frames into a picture
+	 */
+	public void setRecording(final boolean recording) {
+		mRecording = recording;
+	}
+
+	/**
+	 * Returns the picture the last frame has been recorded into. The picture should not be used while the game is running.
+	 */
+	public Picture getPicture() {
+		return mPicture;
+	}
+
+	/**
+	 * Returns the number of frames posted.
+	 */
+	public int getFrameCount() {
+		return mFrameCount;
+	}
+
+	@Override
+	public Canvas lockCanvas(final Rect dirty) {
+		final Canvas canvas = mRecording ? mPicture.beginRecording(mWidth, mHeight) : mNullCanvas;
+		canvas.save();
+		if (dirty != null)
+			canvas.clipRect(dirty);
+		return canvas;
+	}
+
+	@Override
+	public void unlockCanvasAndPost(final Canvas canvas) {
+		canvas.restore();
+		if (canvas != mNullCanvas)
+			mPicture.endRecording();
+		mFrameCount = mFrameCount + 1;
+	}
+}
@@ -0,0 +1,49 @@
+/*************************************************************************************************************************************************
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************************************************************************************/
+
+package no.nordicsemi.android.digitalbird.game.target;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * A target the game frames are drawn into. The renderer thread locks the canvas of the target, draws a frame and posts it.
+ * <p>
+ * Apart from the {@link SurfaceRenderTarget}, that displays frames on the screen, frames may be drawn into an offscreen bitmap
+ * ({@link BitmapRenderTarget}), or recorded or discarded ({@link RecordingRenderTarget}), so that the game may run headless.
+ * The {@link BandedRenderTarget} wraps another target, rasterizing frames on multiple threads.</p>
+ */
+public interface RenderTarget {
+	/**
+	 * Locks the canvas for drawing.
+	 * @param dirty the region that will be redrawn, or null to redraw the whole frame. The content outside of the region is preserved from
+	 *              the last frame. The target may extend the region, in which case the rectangle is updated.
+	 * @return the canvas to draw on, or null if the target is not ready
+	 */
+	public Canvas lockCanvas(final Rect dirty);
+
+	/**
+	 * Unlocks the canvas and posts the frame.
+	 * @param canvas the canvas obtained from {@link #lockCanvas(Rect)}
+	 */
+	public void unlockCanvasAndPost(final Canvas canvas);
+}